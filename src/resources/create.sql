@@ -33,3 +33,17 @@ CREATE TABLE Appointments (
     VaccineName varchar(255) REFERENCES Vaccines(Name),
 	PRIMARY KEY (AppointmentID)
 );
+
+CREATE TABLE IdBlocks (
+    Name varchar(255),
+    NextValue BIGINT,
+    PRIMARY KEY (Name)
+);
+
+CREATE TABLE DoseHolds (
+    HoldID INT,
+    VaccineName varchar(255) REFERENCES Vaccines(Name),
+    PatientUsername varchar(255) REFERENCES Patients(Username),
+    ExpiresAt DATETIME2,
+    PRIMARY KEY (HoldID)
+);
@@ -0,0 +1,59 @@
+-- The schema from create.sql. Each table is only created when it is missing, so a database that
+-- was set up by hand from create.sql is adopted as version 1 without changes.
+
+IF OBJECT_ID('Caregivers', 'U') IS NULL
+CREATE TABLE Caregivers (
+    Username varchar(255),
+    Salt BINARY(16),
+    Hash BINARY(16),
+    PRIMARY KEY (Username)
+);
+
+IF OBJECT_ID('Patients', 'U') IS NULL
+CREATE TABLE Patients (
+    Username varchar(255),
+    Salt BINARY(16),
+    Hash BINARY(16),
+    PRIMARY KEY (Username)
+);
+
+IF OBJECT_ID('Availabilities', 'U') IS NULL
+CREATE TABLE Availabilities (
+    Time DATE,
+    Username VARCHAR(255) REFERENCES Caregivers(Username),
+    DosesLeft INT,
+    PRIMARY KEY (Time, Username)
+);
+
+IF OBJECT_ID('Vaccines', 'U') IS NULL
+CREATE TABLE Vaccines (
+    Name varchar(255),
+    Doses int,
+    PRIMARY KEY (Name)
+);
+
+IF OBJECT_ID('Appointments', 'U') IS NULL
+CREATE TABLE Appointments (
+    AppointmentID INT,
+    Date date,
+    CaregiverUsername varchar(255) REFERENCES Caregivers(Username),
+    PatientUsername varchar(255) REFERENCES Patients(Username),
+    VaccineName varchar(255) REFERENCES Vaccines(Name),
+    PRIMARY KEY (AppointmentID)
+);
+
+IF OBJECT_ID('IdBlocks', 'U') IS NULL
+CREATE TABLE IdBlocks (
+    Name varchar(255),
+    NextValue BIGINT,
+    PRIMARY KEY (Name)
+);
+
+IF OBJECT_ID('DoseHolds', 'U') IS NULL
+CREATE TABLE DoseHolds (
+    HoldID INT,
+    VaccineName varchar(255) REFERENCES Vaccines(Name),
+    PatientUsername varchar(255) REFERENCES Patients(Username),
+    ExpiresAt DATETIME2,
+    PRIMARY KEY (HoldID)
+);
@@ -0,0 +1,15 @@
+-- Indexes for the lookups that otherwise scan Appointments as its history grows.
+
+-- show_appointments for a patient and Patient.getLatestAppointmentID (MAX(AppointmentID) is the
+-- last row of the patient's range); the INCLUDE columns make SELECT * a pure index seek
+CREATE INDEX IX_Appointments_Patient ON Appointments (PatientUsername, AppointmentID)
+    INCLUDE (Date, CaregiverUsername, VaccineName);
+
+-- show_appointments for a caregiver, and lookups of a caregiver's appointments on a day
+CREATE INDEX IX_Appointments_Caregiver_Date ON Appointments (CaregiverUsername, Date)
+    INCLUDE (PatientUsername, VaccineName);
+
+-- the primary key (Time, Username) serves searches by day; this one serves a caregiver's own
+-- schedule and the (Username, Time) joins done when an appointment is cancelled
+CREATE INDEX IX_Availabilities_Username_Time ON Availabilities (Username, Time)
+    INCLUDE (DosesLeft);
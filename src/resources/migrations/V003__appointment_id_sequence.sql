@@ -0,0 +1,14 @@
+-- A sequence for AppointmentID, so IDs no longer depend on the IdBlocks counter row. It starts past
+-- both the highest existing ID and any block IdAllocator already handed out, so IDs reserved by
+-- processes still running against the counter can't be handed out again. Rows inserted without an
+-- ID take the next value by default.
+
+DECLARE @start BIGINT = (SELECT ISNULL(MAX(AppointmentID), 0) + 1 FROM Appointments);
+DECLARE @counter BIGINT = (SELECT NextValue FROM IdBlocks WHERE Name = 'Appointments');
+IF @counter > @start
+    SET @start = @counter;
+EXEC ('CREATE SEQUENCE AppointmentIds AS INT START WITH ' + CAST(@start AS varchar(20)) + ' INCREMENT BY 1 CACHE 50');
+GO
+
+ALTER TABLE Appointments ADD CONSTRAINT DF_Appointments_AppointmentID
+    DEFAULT (NEXT VALUE FOR AppointmentIds) FOR AppointmentID;
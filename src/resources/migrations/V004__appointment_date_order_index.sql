@@ -0,0 +1,4 @@
+-- Paged show_appointments for a patient reads in (Date, AppointmentID) order; the caregiver side is
+-- already served by IX_Appointments_Caregiver_Date, which carries the clustered AppointmentID key.
+CREATE INDEX IX_Appointments_Patient_Date ON Appointments (PatientUsername, Date, AppointmentID)
+    INCLUDE (CaregiverUsername, VaccineName);
@@ -0,0 +1,20 @@
+-- Availabilities is the per-(date, caregiver) capacity summary: DosesLeft is kept up to date by the
+-- upload, reserve and cancel transactions. Capacity records what was uploaded, so DosesLeft can be
+-- recomputed from the appointments (see CapacityRebuilder) if it ever drifts.
+
+ALTER TABLE Availabilities ADD Capacity INT NULL;
+GO
+
+-- rows from before DosesLeft was maintained have a NULL there, meaning one free slot
+UPDATE a SET
+    Capacity = ISNULL(a.DosesLeft, 1) + b.Booked,
+    DosesLeft = ISNULL(a.DosesLeft, 1)
+FROM Availabilities a
+CROSS APPLY (SELECT COUNT(*) AS Booked FROM Appointments p
+             WHERE p.CaregiverUsername = a.Username AND p.Date = a.Time) b;
+GO
+
+ALTER TABLE Availabilities ALTER COLUMN Capacity INT NOT NULL;
+ALTER TABLE Availabilities ALTER COLUMN DosesLeft INT NOT NULL;
+ALTER TABLE Availabilities ADD CONSTRAINT CK_Availabilities_DosesLeft
+    CHECK (DosesLeft >= 0 AND DosesLeft <= Capacity);
@@ -0,0 +1,12 @@
+-- Patients waiting for a slot on a date, served first come first served: the lowest EntryID for the
+-- date is the head of the queue. A patient waits at most once per date.
+CREATE TABLE Waitlist (
+    EntryID INT IDENTITY PRIMARY KEY,
+    Date DATE NOT NULL,
+    VaccineName varchar(255) NOT NULL REFERENCES Vaccines(Name),
+    PatientUsername varchar(255) NOT NULL REFERENCES Patients(Username),
+    CreatedAt DATETIME2 DEFAULT SYSUTCDATETIME(),
+    CONSTRAINT UQ_Waitlist_Date_Patient UNIQUE (Date, PatientUsername)
+);
+
+CREATE INDEX IX_Waitlist_Date_Entry ON Waitlist (Date, EntryID) INCLUDE (VaccineName, PatientUsername);
@@ -0,0 +1,7 @@
+-- The last journal entry each appointment journal (Storage=journal) has applied, written in the
+-- same transaction as the entries, so an entry replayed after a crash is recognised and skipped.
+-- JournalID is the random ID in the journal file's header.
+CREATE TABLE JournalProgress (
+    JournalID BIGINT PRIMARY KEY,
+    AppliedSequence BIGINT NOT NULL
+);
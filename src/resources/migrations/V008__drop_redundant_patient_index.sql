@@ -0,0 +1,5 @@
+-- IX_Appointments_Patient_Date (V004) leads with PatientUsername and carries every column, so it
+-- serves all the patient lookups IX_Appointments_Patient (V002) was added for; MAX(AppointmentID)
+-- now reads the patient's range instead of its last row, which is a handful of rows per patient.
+-- Dropping it leaves one patient index to maintain on every appointment write.
+DROP INDEX IX_Appointments_Patient ON Appointments;
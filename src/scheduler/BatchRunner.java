@@ -0,0 +1,191 @@
+package scheduler;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs a file of scheduler commands, one per line, through a single session without prompts and
+// writes everything the commands print to a buffered output file (stdout by default). With
+// --pipeline n, consecutive read-only commands (see Scheduler.isReadOnly) run concurrently on n
+// threads; their output is still written in command order. A command that fails with an unexpected
+// exception is reported in the output and counted as an error, and the batch carries on. A summary
+// with per-command counts, errors and timings, total wall time and commands/second is printed at the
+// end.
+//
+// Usage: BatchRunner <command file> [--out <file>] [--pipeline <threads>]
+public class BatchRunner {
+
+    private final Scheduler session;
+    private final PrintStream out;
+    private final ExecutorService pipeline;
+    private final Map<String, Stats> stats = new TreeMap<>();
+
+    public BatchRunner(PrintStream out, int pipelineThreads) {
+        this.out = out;
+        this.session = new Scheduler(out);
+        this.pipeline = pipelineThreads > 1 ? Executors.newFixedThreadPool(pipelineThreads) : null;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: BatchRunner <command file> [--out <file>] [--pipeline <threads>]");
+            return;
+        }
+        String outFile = null;
+        int threads = 1;
+        try {
+            for (int i = 1; i < args.length; i += 2) {
+                if (args[i].equals("--out") && i + 1 < args.length) {
+                    outFile = args[i + 1];
+                } else if (args[i].equals("--pipeline") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[i + 1]);
+                } else {
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Please enter a valid number of threads!");
+            return;
+        }
+
+        try (OutputStream target = outFile == null ? new FileOutputStream(java.io.FileDescriptor.out)
+                : new FileOutputStream(outFile);
+             PrintStream out = new PrintStream(new BufferedOutputStream(target, 1 << 16), false, "UTF-8")) {
+            BatchRunner runner = new BatchRunner(out, threads);
+            long start = System.nanoTime();
+            int commands = runner.run(args[0]);
+            long elapsed = System.nanoTime() - start;
+            out.flush();
+            runner.printSummary(System.out, commands, elapsed);
+        } catch (IOException e) {
+            System.out.println("Batch failed: " + e.getMessage());
+        }
+    }
+
+    // Returns the number of commands executed.
+    public int run(String file) throws IOException {
+        int executed = 0;
+        List<String> readOnlyRun = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (pipeline != null && Scheduler.isReadOnly(operation(line))) {
+                    readOnlyRun.add(line);
+                    continue;
+                }
+                executed += flushReadOnly(readOnlyRun);
+                executed++;
+                if (!timed(session, out, line)) {
+                    return executed;
+                }
+            }
+            executed += flushReadOnly(readOnlyRun);
+        } finally {
+            session.releaseHolds();
+            if (pipeline != null) {
+                pipeline.shutdown();
+            }
+        }
+        return executed;
+    }
+
+    private int flushReadOnly(List<String> lines) {
+        if (lines.isEmpty()) {
+            return 0;
+        }
+        List<Future<byte[]>> results = new ArrayList<>();
+        for (String line : lines) {
+            results.add(pipeline.submit(() -> {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                PrintStream commandOut = new PrintStream(buffer, false, "UTF-8");
+                timed(session.withOutput(commandOut), commandOut, line);
+                commandOut.flush();
+                return buffer.toByteArray();
+            }));
+        }
+        for (Future<byte[]> result : results) {
+            try {
+                out.write(result.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | IOException e) {
+                out.println("Command failed: " + e.getMessage());
+            }
+        }
+        int count = lines.size();
+        lines.clear();
+        return count;
+    }
+
+    private boolean timed(Scheduler target, PrintStream commandOut, String line) {
+        long start = System.nanoTime();
+        boolean keepGoing = true;
+        boolean failed = false;
+        try {
+            keepGoing = target.execute(line);
+        } catch (RuntimeException e) {
+            commandOut.println("Command failed: " + e);
+            failed = true;
+        }
+        long elapsed = System.nanoTime() - start;
+        Stats commandStats;
+        synchronized (stats) {
+            commandStats = stats.computeIfAbsent(operation(line), k -> new Stats());
+            commandStats.count++;
+            if (failed) {
+                commandStats.errors++;
+            }
+            commandStats.totalNanos += elapsed;
+            commandStats.maxNanos = Math.max(commandStats.maxNanos, elapsed);
+        }
+        return keepGoing;
+    }
+
+    public void printSummary(PrintStream report, int commands, long elapsedNanos) {
+        report.println(String.format("%-28s %8s %8s %12s %10s %10s", "command", "count", "errors", "total ms",
+                "avg ms", "max ms"));
+        synchronized (stats) {
+            for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+                Stats s = entry.getValue();
+                report.println(String.format("%-28s %8d %8d %12.1f %10.3f %10.3f", entry.getKey(), s.count,
+                        s.errors, s.totalNanos / 1e6, s.totalNanos / 1e6 / s.count, s.maxNanos / 1e6));
+            }
+        }
+        double seconds = elapsedNanos / 1e9;
+        report.println(String.format("%d commands in %.3f s (%.1f commands/s)", commands, seconds,
+                seconds > 0 ? commands / seconds : 0.0));
+    }
+
+    private static String operation(String line) {
+        int space = line.indexOf(' ');
+        return space < 0 ? line : line.substring(0, space);
+    }
+
+    private static class Stats {
+        private long count;
+        private long errors;
+        private long totalNanos;
+        private long maxNanos;
+    }
+}
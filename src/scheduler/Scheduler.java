@@ -1,49 +1,111 @@
 package scheduler;
 
 import scheduler.db.ConnectionManager;
+import scheduler.db.MigrationRunner;
+import scheduler.db.TransactionExecutor;
+import scheduler.metrics.CommandMetrics;
 import scheduler.model.Caregiver;
 import scheduler.model.Patient;
 import scheduler.model.Vaccine;
 import scheduler.model.Appointment;
-import scheduler.util.Util;
+import scheduler.model.Reservation;
+import scheduler.repository.Repositories;
+import scheduler.service.AvailabilityIndex;
+import scheduler.service.ReservationService;
+import scheduler.service.WaitlistService;
+import scheduler.util.Config;
+import scheduler.util.PasswordHasher;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.io.PrintStream;
 import java.sql.SQLException;
 import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.Future;
 
 public class Scheduler {
 
+    // longest date range a single upload_availability accepts
+    private static final int MAX_UPLOAD_DAYS = 366;
+
+    // commands that get their own CommandMetrics entry; anything else a client types does not
+    private static final Set<String> COMMANDS = new HashSet<>(Arrays.asList("create_patient", "create_caregiver",
+            "login_patient", "login_caregiver", "search_caregiver_schedule", "reserve", "hold", "confirm",
+            "upload_availability", "cancel", "add_doses", "show_appointments", "waitlist", "logout", "quit"));
+
+    // Each Scheduler instance is one session: the logged-in user and that user's holds, plus the
+    // stream the session's output goes to. The interactive mode runs a single session on
+    // stdin/stdout; the server mode (SchedulerServer) runs one per connected client.
     // objects to keep track of the currently logged-in user
     // Note: it is always true that at most one of currentCaregiver and currentPatient is not null
     //       since only one user can be logged-in at a time
-    private static Caregiver currentCaregiver = null;
-    private static Patient currentPatient = null;
+    private Caregiver currentCaregiver = null;
+    private Patient currentPatient = null;
+    // dose holds placed by the current patient that have not been confirmed yet
+    private final Map<Integer, Vaccine.DoseHold> currentHolds = new HashMap<>();
+    private final PrintStream out;
+    // keeps this session's reads on the primary right after it writes (see ConnectionManager)
+    private ConnectionManager.Session dbSession = new ConnectionManager.Session();
+
+    public Scheduler(PrintStream out) {
+        this.out = out;
+    }
+
+    // A session for the same logged-in user writing to a different stream, used to run read-only
+    // commands side by side (see BatchRunner). It does not share the parent's holds.
+    public Scheduler withOutput(PrintStream out) {
+        Scheduler view = new Scheduler(out);
+        view.currentCaregiver = this.currentCaregiver;
+        view.currentPatient = this.currentPatient;
+        view.dbSession = this.dbSession;
+        return view;
+    }
+
+    // Commands that neither change the session nor write to the database, so they can run in any
+    // order relative to each other.
+    public static boolean isReadOnly(String operation) {
+        return operation.equals("search_caregiver_schedule") || operation.equals("show_appointments");
+    }
 
     public static void main(String[] args) {
-        // printing greetings text
-        System.out.println();
-        System.out.println("Welcome to the COVID-19 Vaccine Reservation Scheduling Application!");
-        System.out.println("*** Please enter one of the following commands ***");
-        System.out.println("> create_patient <username> <password>");  //TODO: implement create_patient (Part 1)
-        System.out.println("> create_caregiver <username> <password>");
-        System.out.println("> login_patient <username> <password>");  // TODO: implement login_patient (Part 1)
-        System.out.println("> login_caregiver <username> <password>");
-        System.out.println("> search_caregiver_schedule <date>");  // TODO: implement search_caregiver_schedule (Part 2)
-        System.out.println("> reserve <date> <vaccine>");  // TODO: implement reserve (Part 2)
-        System.out.println("> upload_availability <date>");
-        System.out.println("> cancel <appointment_id>");  // TODO: implement cancel (extra credit)
-        System.out.println("> add_doses <vaccine> <number>");
-        System.out.println("> show_appointments");  // TODO: implement show_appointments (Part 2)
-        System.out.println("> logout");  // TODO: implement logout (Part 2)
-        System.out.println("> quit");
-        System.out.println();
+        // before the storage is opened, since the journal engine loads the tables when it starts
+        if (!Config.getString("Storage", "jdbc").equalsIgnoreCase("memory") && !MigrationRunner.migrateOnStartup()) {
+            return;
+        }
+        // batch mode: scheduler --batch <command file> [--out <file>] [--pipeline <threads>]
+        if (args.length >= 1 && args[0].equals("--batch")) {
+            BatchRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // server mode: scheduler --server [port]
+        if (args.length >= 1 && args[0].equals("--server")) {
+            try {
+                int port = args.length >= 2 ? Integer.parseInt(args[1]) : SchedulerServer.DEFAULT_PORT;
+                Vaccine.startExpiredHoldSweep();
+                new SchedulerServer(port).run();
+            } catch (NumberFormatException e) {
+                System.out.println("Please enter a valid port!");
+            } catch (IOException e) {
+                System.out.println("Server stopped: " + e.getMessage());
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        Scheduler session = new Scheduler(System.out);
+        session.printGreeting();
 
         // read input from user
         BufferedReader r = new BufferedReader(new InputStreamReader(System.in));
@@ -55,157 +117,220 @@ public class Scheduler {
             } catch (IOException e) {
                 System.out.println("Please try again!");
             }
-            // split the user input by spaces
-            String[] tokens = response.split(" ");
-            // check if input exists
-            if (tokens.length == 0) {
-                System.out.println("Please try again!");
-                continue;
+            // end of input behaves like quit
+            if (response == null) {
+                response = "quit";
+            }
+            if (!session.execute(response)) {
+                return;
+            }
+        }
+    }
+
+    public void printGreeting() {
+        // printing greetings text
+        out.println();
+        out.println("Welcome to the COVID-19 Vaccine Reservation Scheduling Application!");
+        out.println("*** Please enter one of the following commands ***");
+        out.println("> create_patient <username> <password>");  //TODO: implement create_patient (Part 1)
+        out.println("> create_caregiver <username> <password>");
+        out.println("> login_patient <username> <password>");  // TODO: implement login_patient (Part 1)
+        out.println("> login_caregiver <username> <password>");
+        out.println("> search_caregiver_schedule <date>");  // TODO: implement search_caregiver_schedule (Part 2)
+        out.println("> search_caregiver_schedule <start_date> <end_date>");
+        out.println("> reserve <date> <vaccine>");  // TODO: implement reserve (Part 2)
+        out.println("> hold <vaccine>");
+        out.println("> confirm <hold_id> <date>");
+        out.println("> upload_availability <date>");
+        out.println("> upload_availability <start_date> <end_date> [weekdays] [doses]");
+        out.println("> cancel <appointment_id>");  // TODO: implement cancel (extra credit)
+        out.println("> add_doses <vaccine> <number>");
+        out.println("> show_appointments [--from <date>] [--to <date>] [--page <n>] [--after <date>:<id>]");
+        out.println("> waitlist <date> <vaccine>");
+        out.println("> logout");  // TODO: implement logout (Part 2)
+        out.println("> metrics");
+        out.println("> quit");
+        out.println();
+    }
+
+    // Runs one command line for this session; returns false once the user quits.
+    public boolean execute(String response) {
+        // split the user input by spaces
+        String[] tokens = response.split(" ");
+        // check if input exists
+        if (tokens.length == 0) {
+            out.println("Please try again!");
+            return true;
+        }
+        // determine which operation to perform
+        String operation = tokens[0];
+        printWaitlistNotices();
+        CommandMetrics.Scope scope = COMMANDS.contains(operation) ? CommandMetrics.begin(operation) : null;
+        ConnectionManager.Session previousSession = ConnectionManager.bindSession(dbSession);
+        try {
+            if (operation.equals("create_patient")) {
+                createPatient(tokens);
+            } else if (operation.equals("create_caregiver")) {
+                createCaregiver(tokens);
+            } else if (operation.equals("login_patient")) {
+                loginPatient(tokens);
+            } else if (operation.equals("login_caregiver")) {
+                loginCaregiver(tokens);
+            } else if (operation.equals("search_caregiver_schedule")) {
+                searchCaregiverSchedule(tokens);
+            } else if (operation.equals("reserve")) {
+                reserve(tokens);
+            } else if (operation.equals("hold")) {
+                hold(tokens);
+            } else if (operation.equals("confirm")) {
+                confirm(tokens);
+            } else if (operation.equals("upload_availability")) {
+                uploadAvailability(tokens);
+            } else if (operation.equals("cancel")) {
+                cancel(tokens);
+            } else if (operation.equals("add_doses")) {
+                addDoses(tokens);
+            } else if (operation.equals("show_appointments")) {
+                showAppointments(tokens);
+            } else if (operation.equals("waitlist")) {
+                waitlist(tokens);
+            } else if (operation.equals("logout")) {
+                logout(tokens);
+            } else if (operation.equals("metrics")) {
+                CommandMetrics.getInstance().dump(out);
+                out.println(TransactionExecutor.getInstance());
+            } else if (operation.equals("quit")) {
+                releaseHolds();
+                out.println("Bye!");
+                return false;
+            } else {
+                out.println("Invalid operation name!");
             }
-            // determine which operation to perform
-            String operation = tokens[0];
-            // Inside the main method
+        } catch (SQLException e) {
+            reportError("An error occurred during the operation: " + e.getMessage(), e);
+        } finally {
+            ConnectionManager.bindSession(previousSession);
+            if (scope != null) {
+                scope.end();
+            }
+        }
+        return true;
+    }
+
+    // Retries of a deadlock or lock timeout ran out (see TransactionExecutor): nothing is wrong with
+    // the request itself, so the user is told to try again rather than that it failed.
+    private static String busyOr(SQLException e, String message) {
+        return TransactionExecutor.transientErrorCode(e) != 0 ? "The system is busy, please try again!" : message;
+    }
+
+    // Tells the user, keeps the stack trace for the operator and counts the command as failed.
+    private void reportError(String message, Exception e) {
+        out.println(message);
+        e.printStackTrace();
+        CommandMetrics.errorOccurred();
+    }
+
+    // Gives back any doses the patient was still holding; also called when a client disconnects.
+    public void releaseHolds() {
+        for (Integer holdID : currentHolds.keySet()) {
             try {
-                if (operation.equals("create_patient")) {
-                    createPatient(tokens);
-                } else if (operation.equals("create_caregiver")) {
-                    createCaregiver(tokens);
-                } else if (operation.equals("login_patient")) {
-                    loginPatient(tokens);
-                } else if (operation.equals("login_caregiver")) {
-                    loginCaregiver(tokens);
-                } else if (operation.equals("search_caregiver_schedule")) {
-                    searchCaregiverSchedule(tokens);
-                } else if (operation.equals("reserve")) {
-                    reserve(tokens);
-                } else if (operation.equals("upload_availability")) {
-                    uploadAvailability(tokens);
-                } else if (operation.equals("cancel")) {
-                    cancel(tokens);
-                } else if (operation.equals("add_doses")) {
-                    addDoses(tokens);
-                } else if (operation.equals("show_appointments")) {
-                    showAppointments(tokens);
-                } else if (operation.equals("logout")) {
-                    logout(tokens);
-                } else if (operation.equals("quit")) {
-                    System.out.println("Bye!");
-                    return;
-                } else {
-                    System.out.println("Invalid operation name!");
-                }
+                Vaccine.releaseHold(holdID);
             } catch (SQLException e) {
-                System.out.println("An error occurred during the operation: " + e.getMessage());
-                e.printStackTrace();
+                reportError("Error occurred when releasing hold " + holdID, e);
             }
         }
+        currentHolds.clear();
     }
 
-    private static void createPatient(String[] tokens) {
+    private void createPatient(String[] tokens) {
         // create_patient <username> <password>
         // check 1: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Failed to create user.");
+            out.println("Failed to create user.");
             return;
         }
         String username = tokens[1];
         String password = tokens[2];
+        // start hashing on the hashing pool while the username is checked, so no connection is
+        // held while the hash is computed
+        Future<byte[][]> saltAndHash = PasswordHasher.saltAndHashAsync(password);
         // check 2: check if the username has been taken already
         if (usernameExistsPatient(username)) {
-            System.out.println("Username taken, try again!");
+            out.println("Username taken, try again!");
             return;
         }
-        byte[] salt = Util.generateSalt();
-        byte[] hash = Util.generateHash(password, salt);
+        byte[][] result = PasswordHasher.await(saltAndHash);
+        byte[] salt = result[0];
+        byte[] hash = result[1];
         // create the patient
         try {
             Patient patient = new Patient.PatientBuilder(username, salt, hash).build();
             // save to patient information to our database
             patient.saveToDB();
-            System.out.println("Created user " + username);
+            out.println("Created user " + username);
         } catch (SQLException e) {
-            System.out.println("Failed to create user.");
-            e.printStackTrace();
+            reportError("Failed to create user.", e);
         }
     }
-    private static boolean usernameExistsPatient(String username) {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String selectUsername = "SELECT * FROM Patients WHERE Username = ?";
+    private boolean usernameExistsPatient(String username) {
         try {
-            PreparedStatement statement = con.prepareStatement(selectUsername);
-            statement.setString(1, username);
-            ResultSet resultSet = statement.executeQuery();
-            // returns false if the cursor is not before the first record or if there are no rows in the ResultSet.
-            return resultSet.isBeforeFirst();
+            return Repositories.patients().exists(username);
         } catch (SQLException e) {
-            System.out.println("Error occurred when checking username");
-            e.printStackTrace();
-        } finally {
-            cm.closeConnection();
+            reportError("Error occurred when checking username", e);
         }
         return true;
     }
 
-    private static void createCaregiver(String[] tokens) {
+    private void createCaregiver(String[] tokens) {
         // create_caregiver <username> <password>
         // check 1: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Failed to create user.");
+            out.println("Failed to create user.");
             return;
         }
         String username = tokens[1];
         String password = tokens[2];
+        // start hashing on the hashing pool while the username is checked, so no connection is
+        // held while the hash is computed
+        Future<byte[][]> saltAndHash = PasswordHasher.saltAndHashAsync(password);
         // check 2: check if the username has been taken already
         if (usernameExistsCaregiver(username)) {
-            System.out.println("Username taken, try again!");
+            out.println("Username taken, try again!");
             return;
         }
-        byte[] salt = Util.generateSalt();
-        byte[] hash = Util.generateHash(password, salt);
+        byte[][] result = PasswordHasher.await(saltAndHash);
+        byte[] salt = result[0];
+        byte[] hash = result[1];
         // create the caregiver
         try {
             Caregiver caregiver = new Caregiver.CaregiverBuilder(username, salt, hash).build(); 
             // save to caregiver information to our database
             caregiver.saveToDB();
-            System.out.println("Created user " + username);
+            out.println("Created user " + username);
         } catch (SQLException e) {
-            System.out.println("Failed to create user.");
-            e.printStackTrace();
+            reportError("Failed to create user.", e);
         }
     }
 
-    private static boolean usernameExistsCaregiver(String username) {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String selectUsername = "SELECT * FROM Caregivers WHERE Username = ?";
+    private boolean usernameExistsCaregiver(String username) {
         try {
-            PreparedStatement statement = con.prepareStatement(selectUsername);
-            statement.setString(1, username);
-            ResultSet resultSet = statement.executeQuery();
-            // returns false if the cursor is not before the first record or if there are no rows in the ResultSet.
-            return resultSet.isBeforeFirst();
+            return Repositories.caregivers().exists(username);
         } catch (SQLException e) {
-            System.out.println("Error occurred when checking username");
-            e.printStackTrace();
-        } finally {
-            cm.closeConnection();
+            reportError("Error occurred when checking username", e);
         }
         return true;
     }
 
-    private static void loginPatient(String[] tokens) {
+    private void loginPatient(String[] tokens) {
         // login_patient <username> <password>
         // check 1: if someone's already logged-in, they need to log out first
         if (currentCaregiver != null || currentPatient != null) {
-            System.out.println("User already logged in.");
+            out.println("User already logged in.");
             return;
         }
         // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Login failed.");
+            out.println("Login failed.");
             return;
         }
         String username = tokens[1];
@@ -215,28 +340,27 @@ public class Scheduler {
         try {
             patient = new Patient.PatientGetter(username, password).get();
         } catch (SQLException e) {
-            System.out.println("Login failed.");
-            e.printStackTrace();
+            reportError("Login failed.", e);
         }
         // check if the login was successful
         if (patient == null) {
-            System.out.println("Login failed.");
+            out.println("Login failed.");
         } else {
-            System.out.println("Logged in as: " + username);
+            out.println("Logged in as: " + username);
             currentPatient = patient;
         }
     }
 
-    private static void loginCaregiver(String[] tokens) {
+    private void loginCaregiver(String[] tokens) {
         // login_caregiver <username> <password>
         // check 1: if someone's already logged-in, they need to log out first
         if (currentCaregiver != null || currentPatient != null) {
-            System.out.println("User already logged in.");
+            out.println("User already logged in.");
             return;
         }
         // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Login failed.");
+            out.println("Login failed.");
             return;
         }
         String username = tokens[1];
@@ -246,26 +370,29 @@ public class Scheduler {
         try {
             caregiver = new Caregiver.CaregiverGetter(username, password).get();
         } catch (SQLException e) {
-            System.out.println("Login failed.");
-            e.printStackTrace();
+            reportError("Login failed.", e);
         }
         // check if the login was successful
         if (caregiver == null) {
-            System.out.println("Login failed.");
+            out.println("Login failed.");
         } else {
-            System.out.println("Logged in as: " + username);
+            out.println("Logged in as: " + username);
             currentCaregiver = caregiver;
         }
     }
 
-    private static void searchCaregiverSchedule(String[] tokens) {
+    private void searchCaregiverSchedule(String[] tokens) {
         if (currentCaregiver == null && currentPatient == null) {
-            System.out.println("Please login first!");
+            out.println("Please login first!");
             return;
         }
 
+        if (tokens.length == 3) {
+            searchCaregiverScheduleRange(tokens[1], tokens[2]);
+            return;
+        }
         if (tokens.length != 2) {
-            System.out.println("Please try again!");
+            out.println("Please try again!");
             return;
         }
 
@@ -274,61 +401,88 @@ public class Scheduler {
             List<String> results = searchCaregiverScheduleFromDB(date);
 
             if (results.isEmpty()) {
-                System.out.println("No caregivers available for the given date.");
+                out.println("No caregivers available for the given date.");
             } else {
                 // Print the results
-                System.out.println("CaregiverUsername DosesLeft");
+                out.println("CaregiverUsername DosesLeft");
                 for (String result : results) {
-                    System.out.println(result);
+                    out.println(result);
                 }
             }
         } catch (IllegalArgumentException e) {
-            System.out.println("Please enter a valid date!");
+            out.println("Please enter a valid date!");
         }
     }
 
-    private static List<String> searchCaregiverScheduleFromDB(Date date) {
-        List<String> results = new ArrayList<>();
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String sqlQuery = "SELECT Availabilities.Username, COUNT(*) AS DosesLeft " +
-                "FROM Availabilities " +
-                "LEFT JOIN Appointments ON Availabilities.Username = Appointments.CaregiverUsername " +
-                "                       AND Availabilities.Time = Appointments.Date " +
-                "WHERE Availabilities.Time = ? " +
-                "      AND Appointments.AppointmentID IS NULL " +
-                "GROUP BY Availabilities.Username " +
-                "ORDER BY Availabilities.Username;";
+    // search_caregiver_schedule <start> <end>: one range read (or the index, for dates it holds)
+    // instead of a search per date, printed in date order, followed by the doses of each vaccine.
+    private void searchCaregiverScheduleRange(String startToken, String endToken) {
+        Date start;
+        Date end;
+        try {
+            start = Date.valueOf(startToken);
+            end = Date.valueOf(endToken);
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date range!");
+            return;
+        }
+        LocalDate first = start.toLocalDate();
+        LocalDate last = end.toLocalDate();
+        if (last.isBefore(first) || first.plusDays(MAX_UPLOAD_DAYS).isBefore(last)) {
+            out.println("Please enter a valid date range!");
+            return;
+        }
 
         try {
-            PreparedStatement statement = con.prepareStatement(sqlQuery);
-            statement.setDate(1, date);
-            ResultSet resultSet = statement.executeQuery();
+            SortedMap<LocalDate, SortedMap<String, Integer>> schedule =
+                    AvailabilityIndex.getInstance().lookupRange(start, end);
+            if (schedule.isEmpty()) {
+                out.println("No caregivers available for the given dates.");
+            } else {
+                out.println("Date CaregiverUsername DosesLeft");
+                for (Map.Entry<LocalDate, SortedMap<String, Integer>> day : schedule.entrySet()) {
+                    for (Map.Entry<String, Integer> caregiver : day.getValue().entrySet()) {
+                        out.println(day.getKey() + " " + caregiver.getKey() + " " + caregiver.getValue());
+                    }
+                }
+            }
+            SortedMap<String, Integer> vaccines = Vaccine.getAllAvailableDoses();
+            if (vaccines.isEmpty()) {
+                out.println("No vaccines available.");
+            } else {
+                out.println("VaccineName AvailableDoses");
+                for (Map.Entry<String, Integer> vaccine : vaccines.entrySet()) {
+                    out.println(vaccine.getKey() + " " + vaccine.getValue());
+                }
+            }
+        } catch (SQLException e) {
+            reportError("Error occurred when searching caregiver schedule", e);
+        }
+    }
 
-            while (resultSet.next()) {
-                String username = resultSet.getString("Username");
-                int dosesLeft = resultSet.getInt("DosesLeft");
-                results.add(username + " " + dosesLeft);
+    private List<String> searchCaregiverScheduleFromDB(Date date) {
+        List<String> results = new ArrayList<>();
+        try {
+            // served from the in-process index, which only goes to the database on a miss
+            SortedMap<String, Integer> caregivers = AvailabilityIndex.getInstance().lookup(date);
+            for (Map.Entry<String, Integer> caregiver : caregivers.entrySet()) {
+                results.add(caregiver.getKey() + " " + caregiver.getValue());
             }
         } catch (SQLException e) {
-            System.out.println("Error occurred when searching caregiver schedule");
-            e.printStackTrace();
-        } finally {
-            cm.closeConnection();
+            reportError("Error occurred when searching caregiver schedule", e);
         }
 
         return results;
     }
 
-    private static void reserve(String[] tokens) throws SQLException {
+    private void reserve(String[] tokens) throws SQLException {
         if (currentPatient == null) {
-            System.out.println("Please login as a patient!");
+            out.println("Please login as a patient!");
             return;
         }
 
         if (tokens.length != 3) {
-            System.out.println("Please try again!");
+            out.println("Please try again!");
             return;
         }
 
@@ -336,121 +490,199 @@ public class Scheduler {
             Date date = Date.valueOf(tokens[1]);
             String vaccineName = tokens[2];
 
-            boolean reservationSuccess = reserveAppointment(date, vaccineName);
+            Reservation reservation = reserveAppointment(date, vaccineName);
 
-            if (reservationSuccess) {
-                System.out.println("Appointment ID: " + currentPatient.getLatestAppointmentID() +
-                        ", Caregiver username: " + currentPatient.getCaregiverUsername());
+            if (reservation != null) {
+                out.println("Appointment ID: " + reservation.getAppointmentID() +
+                        ", Caregiver username: " + reservation.getCaregiverUsername());
             } else {
-                System.out.println("Reservation failed.");
+                out.println("Reservation failed.");
             }
         } catch (IllegalArgumentException e) {
-            System.out.println("Please enter a valid date!");
+            out.println("Please enter a valid date!");
         }
     }
 
-    private static boolean reserveAppointment(Date date, String vaccineName) {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String updateAvailabilityQuery = "UPDATE Availabilities " +
-                "SET Time = ?, Username = ?, DosesLeft = DosesLeft - 1 " +
-                "WHERE Time = ? AND Username = ? AND DosesLeft > 0;";
-
-        String insertAppointmentQuery = "INSERT INTO Appointments (AppointmentID, Date, CaregiverUsername, PatientUsername, VaccineName) " +
-                "VALUES (?, ?, ?, ?, ?);";
-
+    private Reservation reserveAppointment(Date date, String vaccineName) {
         try {
-            con.setAutoCommit(false);
-
-            PreparedStatement updateStatement = con.prepareStatement(updateAvailabilityQuery);
-            updateStatement.setDate(1, date);
-            updateStatement.setString(2, currentPatient.getCaregiverUsername());
-            updateStatement.setDate(3, date);
-            updateStatement.setString(4, currentPatient.getCaregiverUsername());
-            int rowsUpdated = updateStatement.executeUpdate();
-
-            if (rowsUpdated == 0) {
-                System.out.println("Not enough available doses!");
-                return false;
+            Reservation reservation =
+                    ReservationService.reserve(date, vaccineName, currentPatient.getUsername());
+            switch (reservation.getStatus()) {
+                case NO_CAREGIVER:
+                    out.println("No caregiver is available!");
+                    return null;
+                case NO_DOSES:
+                case HOLD_EXPIRED:
+                    out.println("Not enough available doses!");
+                    return null;
+                default:
+                    currentPatient.setLatestAppointmentID(reservation.getAppointmentID());
+                    out.println("Reservation successful!");
+                    return reservation;
             }
-
-
-            // Insert Appointment
-            PreparedStatement insertStatement = con.prepareStatement(insertAppointmentQuery);
-            int appointmentID = generateUniqueAppointmentID();
-            insertStatement.setInt(1, appointmentID);
-            insertStatement.setDate(2, date);
-            insertStatement.setString(3, currentPatient.getCaregiverUsername());
-            insertStatement.setString(4, currentPatient.getUsername());
-            insertStatement.setString(5, vaccineName);
-            insertStatement.executeUpdate();
-
-            con.commit();
-
-            currentPatient.setLatestAppointmentID(appointmentID);
-
-            System.out.println("Reservation successful!");
-            return true;
         } catch (SQLException e) {
-            try {
-                con.rollback();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
-            System.out.println("Error occurred during reservation.");
-            e.printStackTrace();
-            return false;
-        } finally {
-            // Set auto-commit back to true
-            try {
-                con.setAutoCommit(true);
-            } catch (SQLException e) {
-                e.printStackTrace();
+            reportError(busyOr(e, "Error occurred during reservation."), e);
+            return null;
+        }
+    }
+
+    private void hold(String[] tokens) {
+        // hold <vaccine>
+        if (currentPatient == null) {
+            out.println("Please login as a patient!");
+            return;
+        }
+        if (tokens.length != 2) {
+            out.println("Please try again!");
+            return;
+        }
+        try {
+            Vaccine vaccine = new Vaccine.VaccineGetter(tokens[1]).get();
+            Vaccine.DoseHold hold = vaccine == null ? null : vaccine.placeHold(currentPatient.getUsername());
+            if (hold == null) {
+                out.println("Not enough available doses!");
+                return;
             }
-            cm.closeConnection();
+            currentHolds.put(hold.getHoldID(), hold);
+            long seconds = (hold.getExpiresAt() - System.currentTimeMillis() + 999) / 1000;
+            out.println("Hold ID: " + hold.getHoldID() + ", one dose of " + hold.getVaccineName() +
+                    " held for " + seconds + " seconds");
+        } catch (SQLException e) {
+            reportError("Error occurred when placing hold", e);
         }
     }
 
-    private static int generateUniqueAppointmentID() throws SQLException {
-        return Appointment.getUniqueAppointmentID();
+    private void confirm(String[] tokens) {
+        // confirm <hold_id> <date>
+        if (currentPatient == null) {
+            out.println("Please login as a patient!");
+            return;
+        }
+        if (tokens.length != 3) {
+            out.println("Please try again!");
+            return;
+        }
+        try {
+            Vaccine.DoseHold hold = currentHolds.get(Integer.parseInt(tokens[1]));
+            if (hold == null) {
+                out.println("Invalid hold ID!");
+                return;
+            }
+            Date date = Date.valueOf(tokens[2]);
+            Reservation reservation = ReservationService.confirmHold(date, hold);
+            switch (reservation.getStatus()) {
+                case RESERVED:
+                    currentHolds.remove(hold.getHoldID());
+                    currentPatient.setLatestAppointmentID(reservation.getAppointmentID());
+                    out.println("Appointment ID: " + reservation.getAppointmentID() +
+                            ", Caregiver username: " + reservation.getCaregiverUsername());
+                    break;
+                case HOLD_EXPIRED:
+                    currentHolds.remove(hold.getHoldID());
+                    out.println("Hold has expired!");
+                    break;
+                default:
+                    // the hold stays valid, another date can be tried
+                    out.println("No caregiver is available!");
+                    break;
+            }
+        } catch (IllegalArgumentException e) {
+            // also covers NumberFormatException for the hold ID
+            out.println("Please enter a valid hold ID and date!");
+        } catch (SQLException e) {
+            reportError(busyOr(e, "Error occurred when confirming hold"), e);
+        }
     }
 
-    private static void uploadAvailability(String[] tokens) {
+    private void uploadAvailability(String[] tokens) {
         // upload_availability <date>
+        // upload_availability <start> <end> [weekdays] [doses]
         // check 1: check if the current logged-in user is a caregiver
         if (currentCaregiver == null) {
-            System.out.println("Please login as a caregiver first!");
+            out.println("Please login as a caregiver first!");
             return;
         }
-        // check 2: the length for tokens need to be exactly 2 to include all information (with the operation name)
-        if (tokens.length != 2) {
-            System.out.println("Please try again!");
+        // check 2: the length for tokens need to be between 2 and 5 (with the operation name)
+        if (tokens.length < 2 || tokens.length > 5) {
+            out.println("Please try again!");
             return;
         }
-        String date = tokens[1];
+        List<Date> dates;
+        int doses = 1;
         try {
-            Date d = Date.valueOf(date);
-            currentCaregiver.uploadAvailability(d);
-            System.out.println("Availability uploaded!");
+            LocalDate start = Date.valueOf(tokens[1]).toLocalDate();
+            LocalDate end = tokens.length >= 3 ? Date.valueOf(tokens[2]).toLocalDate() : start;
+            Set<DayOfWeek> weekdays = EnumSet.allOf(DayOfWeek.class);
+            // the optional 4th token is either the weekdays or the doses, the 5th is always the doses
+            if (tokens.length == 4 && tokens[3].matches("\\d+")) {
+                doses = Integer.parseInt(tokens[3]);
+            } else if (tokens.length >= 4) {
+                weekdays = parseWeekdays(tokens[3]);
+            }
+            if (tokens.length == 5) {
+                doses = Integer.parseInt(tokens[4]);
+            }
+            if (end.isBefore(start) || start.plusDays(MAX_UPLOAD_DAYS).isBefore(end) || doses <= 0) {
+                out.println("Please try again!");
+                return;
+            }
+            dates = new ArrayList<>();
+            for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+                if (weekdays.contains(day.getDayOfWeek())) {
+                    dates.add(Date.valueOf(day));
+                }
+            }
         } catch (IllegalArgumentException e) {
-            System.out.println("Please enter a valid date!");
+            // also covers NumberFormatException for the doses
+            out.println("Please enter a valid date range!");
+            return;
+        }
+        try {
+            List<Date> inserted = currentCaregiver.uploadAvailability(dates, doses);
+            for (Date d : inserted) {
+                AvailabilityIndex.getInstance().availabilityAdded(d, currentCaregiver.getUsername(), doses);
+            }
+            WaitlistService.getInstance().capacityAdded(inserted);
+            if (dates.size() == 1 && inserted.size() == 1) {
+                out.println("Availability uploaded!");
+            } else {
+                out.println("Availability uploaded for " + inserted.size() + " date(s), " +
+                        (dates.size() - inserted.size()) + " already uploaded.");
+            }
         } catch (SQLException e) {
-            System.out.println("Error occurred when uploading availability");
-            e.printStackTrace();
+            reportError("Error occurred when uploading availability", e);
         }
     }
 
-    private static void addDoses(String[] tokens) {
+    // MON,WED,FRI style list; full day names work too
+    private static Set<DayOfWeek> parseWeekdays(String value) {
+        Set<DayOfWeek> weekdays = EnumSet.noneOf(DayOfWeek.class);
+        for (String day : value.split(",")) {
+            String prefix = day.trim().toUpperCase();
+            DayOfWeek match = null;
+            for (DayOfWeek candidate : DayOfWeek.values()) {
+                if (prefix.length() >= 3 && candidate.name().startsWith(prefix)) {
+                    match = candidate;
+                }
+            }
+            if (match == null) {
+                throw new IllegalArgumentException("Unknown weekday: " + day);
+            }
+            weekdays.add(match);
+        }
+        return weekdays;
+    }
+
+    private void addDoses(String[] tokens) {
         // add_doses <vaccine> <number>
         // check 1: check if the current logged-in user is a caregiver
         if (currentCaregiver == null) {
-            System.out.println("Please login as a caregiver first!");
+            out.println("Please login as a caregiver first!");
             return;
         }
         // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Please try again!");
+            out.println("Please try again!");
             return;
         }
         String vaccineName = tokens[1];
@@ -459,8 +691,7 @@ public class Scheduler {
         try {
             vaccine = new Vaccine.VaccineGetter(vaccineName).get();
         } catch (SQLException e) {
-            System.out.println("Error occurred when adding doses");
-            e.printStackTrace();
+            reportError("Error occurred when adding doses", e);
         }
         // check 3: if getter returns null, it means that we need to create the vaccine and insert it into the Vaccines
         //          table
@@ -469,78 +700,185 @@ public class Scheduler {
                 vaccine = new Vaccine.VaccineBuilder(vaccineName, doses).build();
                 vaccine.saveToDB();
             } catch (SQLException e) {
-                System.out.println("Error occurred when adding doses");
-                e.printStackTrace();
+                reportError("Error occurred when adding doses", e);
             }
         } else {
             try {
                 vaccine.increaseAvailableDoses(doses);
             } catch (SQLException e) {
-                System.out.println("Error occurred when adding doses");
-                e.printStackTrace();
+                reportError("Error occurred when adding doses", e);
+            }
+        }
+        out.println("Doses updated!");
+        WaitlistService.getInstance().dosesAdded();
+    }
+
+    private void waitlist(String[] tokens) {
+        // waitlist <date> <vaccine>
+        if (currentPatient == null) {
+            out.println("Please login as a patient!");
+            return;
+        }
+        if (tokens.length != 3) {
+            out.println("Please try again!");
+            return;
+        }
+        Date date;
+        try {
+            date = Date.valueOf(tokens[1]);
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date!");
+            return;
+        }
+        try {
+            Vaccine vaccine = new Vaccine.VaccineGetter(tokens[2]).get();
+            if (vaccine == null) {
+                out.println("Vaccine not found!");
+                return;
             }
+            int position = WaitlistService.getInstance().join(date, vaccine.getVaccineName(),
+                    currentPatient.getUsername());
+            if (position < 0) {
+                out.println("You are already on the waitlist for " + date + ".");
+            } else {
+                out.println("You are number " + position + " on the waitlist for " + date +
+                        ". You will be booked automatically when a slot opens.");
+            }
+        } catch (SQLException e) {
+            reportError("Error occurred when joining the waitlist", e);
         }
-        System.out.println("Doses updated!");
     }
 
-    private static void showAppointments(String[] tokens) {
+    // bookings the waitlist made for the logged-in patient since their last command
+    private void printWaitlistNotices() {
+        if (currentPatient == null) {
+            return;
+        }
+        for (Appointment appointment : WaitlistService.getInstance().takeNotices(currentPatient.getUsername())) {
+            out.println("From the waitlist: Appointment ID: " + appointment.getAppointmentID() +
+                    ", Date: " + appointment.getDate() + ", Caregiver username: " +
+                    appointment.getCaregiverUsername() + ", Vaccine: " + appointment.getVaccineName());
+        }
+    }
+
+    private void showAppointments(String[] tokens) {
         if (currentCaregiver == null && currentPatient == null) {
-            System.out.println("Please login first!");
+            out.println("Please login first!");
             return;
         }
 
-        if (tokens.length != 1) {
-            System.out.println("Please try again!");
+        // show_appointments [--from <date>] [--to <date>] [--page <n>] [--after <date>:<id>]
+        Date from = null;
+        Date to = null;
+        int pageNumber = 0;
+        Date afterDate = null;
+        int afterID = 0;
+        try {
+            for (int i = 1; i < tokens.length; i += 2) {
+                if (i + 1 >= tokens.length) {
+                    out.println("Please try again!");
+                    return;
+                }
+                if (tokens[i].equals("--from")) {
+                    from = Date.valueOf(tokens[i + 1]);
+                } else if (tokens[i].equals("--to")) {
+                    to = Date.valueOf(tokens[i + 1]);
+                } else if (tokens[i].equals("--page")) {
+                    pageNumber = Integer.parseInt(tokens[i + 1]);
+                    if (pageNumber <= 0) {
+                        out.println("Please try again!");
+                        return;
+                    }
+                } else if (tokens[i].equals("--after")) {
+                    // the resume key printed under the previous page
+                    String[] key = tokens[i + 1].split(":");
+                    if (key.length != 2) {
+                        out.println("Please try again!");
+                        return;
+                    }
+                    afterDate = Date.valueOf(key[0]);
+                    afterID = Integer.parseInt(key[1]);
+                } else {
+                    out.println("Please try again!");
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            out.println("Please try again!");
+            return;
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date!");
             return;
         }
 
         try {
-            List<Appointment> appointments;
+            Appointment.AppointmentCursor appointments;
             if (currentPatient != null) {
-                appointments = Appointment.getAppointmentsForPatient(currentPatient.getUsername());
+                appointments = Appointment.streamForPatient(currentPatient.getUsername(), from, to);
             } else {
-                appointments = Appointment.getAppointmentsForCaregiver(currentCaregiver.getUsername());
+                appointments = Appointment.streamForCaregiver(currentCaregiver.getUsername(), from, to);
+            }
+            // --after seeks straight to the key; --page skips on the server, in the same query as the page
+            int limit = Integer.MAX_VALUE;
+            if (afterDate != null) {
+                appointments.startAfter(afterDate, afterID);
+                limit = appointments.getPageSize();
+            }
+            if (pageNumber > 0) {
+                appointments.skip((pageNumber - 1) * appointments.getPageSize());
+                limit = appointments.getPageSize();
             }
 
-            if (appointments.isEmpty()) {
-                System.out.println("No appointments found.");
-            } else {
-
-                System.out.println("AppointmentID Date CaregiverUsername PatientUsername VaccineName");
-                for (Appointment appointment : appointments) {
-                    System.out.println(appointment);
+            // rows are printed as each page arrives rather than after the whole history is read
+            int shown = 0;
+            while (shown < limit && appointments.hasNext()) {
+                if (shown == 0) {
+                    out.println(String.format("%-13s %-10s %-20s %-20s %s",
+                            "AppointmentID", "Date", "CaregiverUsername", "PatientUsername", "VaccineName"));
                 }
+                Appointment appointment = appointments.next();
+                out.println(String.format("%-13d %-10s %-20s %-20s %s", appointment.getAppointmentID(),
+                        appointment.getDate(), appointment.getCaregiverUsername(),
+                        appointment.getPatientUsername(), appointment.getVaccineName()));
+                shown++;
+            }
+            if (shown == 0) {
+                out.println("No appointments found.");
+            } else if (limit != Integer.MAX_VALUE && appointments.hasNext()) {
+                Appointment last = appointments.getLastReturned();
+                out.println("More appointments; continue with --after " + last.getDate() + ":" +
+                        last.getAppointmentID() + ".");
             }
         } catch (SQLException e) {
-            System.out.println("Error occurred when retrieving appointments");
-            e.printStackTrace();
+            reportError("Error occurred when retrieving appointments", e);
         }
     }
 
 
-    private static void logout(String[] tokens) {
+    private void logout(String[] tokens) {
         if (currentCaregiver == null && currentPatient == null) {
-            System.out.println("Please login first!");
+            out.println("Please login first!");
         } else {
-            System.out.println("Successfully logged out!");
+            releaseHolds();
+            out.println("Successfully logged out!");
             currentCaregiver = null;
             currentPatient = null;
         }
     }
 
-    private static void cancel(String[] tokens) {
+    private void cancel(String[] tokens) {
         if (currentPatient != null) {
             cancelAppointmentForPatient(tokens);
         } else if (currentCaregiver != null) {
             cancelAppointmentForCaregiver(tokens);
         } else {
-            System.out.println("Please log in first!");
+            out.println("Please log in first!");
         }
     }
 
-    private static void cancelAppointmentForPatient(String[] tokens) {
+    private void cancelAppointmentForPatient(String[] tokens) {
         if (tokens.length != 2) {
-            System.out.println("Please try again!");
+            out.println("Please try again!");
             return;
         }
 
@@ -550,35 +888,34 @@ public class Scheduler {
             boolean cancellationSuccess = cancelAppointmentForPatient(appointmentID);
 
             if (cancellationSuccess) {
-                System.out.println("Appointment canceled successfully!");
+                out.println("Appointment canceled successfully!");
             } else {
-                System.out.println("Cancellation failed.");
+                out.println("Cancellation failed.");
             }
         } catch (NumberFormatException e) {
-            System.out.println("Please enter a valid appointment ID!");
+            out.println("Please enter a valid appointment ID!");
         }
     }
 
-    private static boolean cancelAppointmentForPatient(int appointmentID) {
+    private boolean cancelAppointmentForPatient(int appointmentID) {
         try {
             Appointment appointment = Appointment.getAppointmentById(appointmentID);
             if (appointment != null && appointment.getPatientUsername().equals(currentPatient.getUsername())) {
-                appointment.removeFromDB();
+                ReservationService.cancel(appointment);
                 return true;
             } else {
-                System.out.println("Invalid appointment ID or you don't have permission to cancel this appointment.");
+                out.println("Invalid appointment ID or you don't have permission to cancel this appointment.");
                 return false;
             }
         } catch (SQLException e) {
-            System.out.println("Error occurred during cancellation.");
-            e.printStackTrace();
+            reportError(busyOr(e, "Error occurred during cancellation."), e);
             return false;
         }
     }
 
-    private static void cancelAppointmentForCaregiver(String[] tokens) {
+    private void cancelAppointmentForCaregiver(String[] tokens) {
         if (tokens.length != 2) {
-            System.out.println("Please try again!");
+            out.println("Please try again!");
             return;
         }
 
@@ -588,28 +925,27 @@ public class Scheduler {
             boolean cancellationSuccess = cancelAppointmentForCaregiver(appointmentID);
 
             if (cancellationSuccess) {
-                System.out.println("Appointment canceled successfully!");
+                out.println("Appointment canceled successfully!");
             } else {
-                System.out.println("Cancellation failed.");
+                out.println("Cancellation failed.");
             }
         } catch (NumberFormatException e) {
-            System.out.println("Please enter a valid appointment ID!");
+            out.println("Please enter a valid appointment ID!");
         }
     }
 
-    private static boolean cancelAppointmentForCaregiver(int appointmentID) {
+    private boolean cancelAppointmentForCaregiver(int appointmentID) {
         try {
             Appointment appointment = Appointment.getAppointmentById(appointmentID);
             if (appointment != null && appointment.getCaregiverUsername().equals(currentCaregiver.getUsername())) {
-                appointment.removeFromDB();
+                ReservationService.cancel(appointment);
                 return true;
             } else {
-                System.out.println("Invalid appointment ID or you don't have permission to cancel this appointment.");
+                out.println("Invalid appointment ID or you don't have permission to cancel this appointment.");
                 return false;
             }
         } catch (SQLException e) {
-            System.out.println("Error occurred during cancellation.");
-            e.printStackTrace();
+            reportError(busyOr(e, "Error occurred during cancellation."), e);
             return false;
         }
     }
@@ -0,0 +1,129 @@
+package scheduler;
+
+import scheduler.util.Config;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Serves many desks from one JVM: every client connection gets its own Scheduler session and is
+// handled on its own (virtual, where the JVM has them) thread, while the connection pool, caches
+// and hashing pool are shared. The protocol is the interactive one over a plain line-based socket:
+// the client sends one command per line and the server answers with the command's output followed
+// by a "> " prompt, so `nc localhost 5414` works as a client.
+public class SchedulerServer {
+
+    public static final int DEFAULT_PORT = 5414;
+
+    private static final int MAX_SESSIONS = Config.getInt("ServerMaxSessions", 1000);
+    private static final String BIND_ADDRESS = Config.getString("ServerBindAddress", "127.0.0.1");
+
+    private final int port;
+    private final Semaphore sessionSlots = new Semaphore(MAX_SESSIONS);
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final ExecutorService executor = newSessionExecutor();
+
+    public SchedulerServer(int port) {
+        this.port = port;
+    }
+
+    public void run() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, 128, InetAddress.getByName(BIND_ADDRESS))) {
+            System.out.println("Scheduler server listening on " + BIND_ADDRESS + ":" + port);
+            while (true) {
+                Socket socket = serverSocket.accept();
+                if (!sessionSlots.tryAcquire()) {
+                    reject(socket);
+                    continue;
+                }
+                executor.execute(() -> {
+                    try {
+                        serve(socket);
+                    } finally {
+                        sessionSlots.release();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    private void serve(Socket socket) {
+        activeSessions.incrementAndGet();
+        Scheduler session = null;
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(new BufferedOutputStream(s.getOutputStream()), false, "UTF-8")) {
+            session = new Scheduler(out);
+            session.printGreeting();
+            out.print("> ");
+            out.flush();
+            String line;
+            while ((line = in.readLine()) != null) {
+                boolean keepGoing;
+                try {
+                    keepGoing = session.execute(line.trim());
+                } catch (RuntimeException e) {
+                    // a line the command didn't expect must not end the session
+                    out.println("Please try again!");
+                    e.printStackTrace();
+                    keepGoing = true;
+                }
+                if (!keepGoing) {
+                    out.flush();
+                    session = null;
+                    return;
+                }
+                out.print("> ");
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client went away, nothing to answer
+        } finally {
+            // a client that disconnects without quitting must not keep doses on hold
+            if (session != null) {
+                session.releaseHolds();
+            }
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    private static void reject(Socket socket) {
+        try (Socket s = socket;
+             PrintStream out = new PrintStream(s.getOutputStream(), true, "UTF-8")) {
+            out.println("Server is busy, please try again later.");
+        } catch (IOException e) {
+            // nothing to do for a client we are turning away
+        }
+    }
+
+    // Virtual threads (Java 21+) make a thread per session cheap. They are looked up reflectively
+    // so the code still builds and runs on older JDKs, where a cached platform-thread pool is used.
+    private static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "scheduler-session-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package scheduler.bench;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+// Minimal JMH-style measurement loop: a number of timed warmup iterations that are thrown away,
+// then timed measurement iterations whose per-op times are averaged. Ops run in chunks so the
+// clock is read far less often than the op runs, and every result is written to a volatile sink
+// so the JIT can't drop the work as dead code.
+public class Harness {
+
+    // chunks are grown during warmup until one takes at least this long
+    private static final long MIN_CHUNK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+
+    private volatile Object sink;
+
+    public Harness(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = TimeUnit.MILLISECONDS.toNanos(iterationMillis);
+    }
+
+    public Result measure(String name, Callable<Object> op) throws Exception {
+        int chunk = 1;
+        for (int i = 0; i < warmupIterations; i++) {
+            long deadline = System.nanoTime() + iterationNanos;
+            while (System.nanoTime() < deadline) {
+                long start = System.nanoTime();
+                runChunk(op, chunk);
+                if (System.nanoTime() - start < MIN_CHUNK_NANOS && chunk < (1 << 20)) {
+                    chunk <<= 1;
+                }
+            }
+        }
+
+        double[] nanosPerOp = new double[measurementIterations];
+        for (int i = 0; i < measurementIterations; i++) {
+            long ops = 0;
+            long start = System.nanoTime();
+            long deadline = start + iterationNanos;
+            long now = start;
+            while (now < deadline) {
+                runChunk(op, chunk);
+                ops += chunk;
+                now = System.nanoTime();
+            }
+            nanosPerOp[i] = (double) (now - start) / ops;
+        }
+        return new Result(name, nanosPerOp);
+    }
+
+    private void runChunk(Callable<Object> op, int chunk) throws Exception {
+        for (int i = 0; i < chunk; i++) {
+            sink = op.call();
+        }
+    }
+
+    public static class Result {
+        private final String name;
+        private final double meanNanos;
+        private final double errorNanos;
+        private final int iterations;
+
+        Result(String name, double[] nanosPerOp) {
+            this.name = name;
+            this.iterations = nanosPerOp.length;
+            double sum = 0;
+            for (double n : nanosPerOp) {
+                sum += n;
+            }
+            this.meanNanos = sum / iterations;
+            double squares = 0;
+            for (double n : nanosPerOp) {
+                squares += (n - meanNanos) * (n - meanNanos);
+            }
+            // half-width of a ~95% interval, like JMH's score error
+            this.errorNanos = iterations > 1 ? 1.96 * Math.sqrt(squares / (iterations - 1)) / Math.sqrt(iterations) : 0;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getMeanNanos() {
+            return meanNanos;
+        }
+
+        public double getErrorNanos() {
+            return errorNanos;
+        }
+
+        public double getOpsPerSecond() {
+            return meanNanos > 0 ? 1e9 / meanNanos : 0;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+    }
+}
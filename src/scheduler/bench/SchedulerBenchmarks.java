@@ -0,0 +1,258 @@
+package scheduler.bench;
+
+import scheduler.Scheduler;
+import scheduler.model.Appointment;
+import scheduler.model.Availability;
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+import scheduler.model.Reservation;
+import scheduler.model.Vaccine;
+import scheduler.repository.Repositories;
+import scheduler.repository.memory.MemoryStorage;
+import scheduler.service.AvailabilityIndex;
+import scheduler.service.ReservationService;
+import scheduler.util.Util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+// Benchmarks for the scheduler hot paths, run against a fresh in-memory store (see MemoryStorage)
+// seeded for every combination of the --caregivers, --days and --appointments sizes:
+//
+//   generate_hash      Util.generateHash (login and account creation)
+//   trim               Util.trim on a padded hash column
+//   parse              Scheduler.execute up to the dispatch of a command
+//   search             search_caregiver_schedule, served by the AvailabilityIndex
+//   search_store       the availability lookup an index miss goes to
+//   reserve_cancel     ReservationService.reserve followed by cancel, so the store stays the same size
+//   show_appointments  show_appointments for a patient holding all seeded appointments
+//
+// The first three don't depend on the data, so they only run with the first size combination.
+// Results are printed and appended to a CSV file (one row per benchmark and size, tagged with
+// --label and a timestamp) so numbers can be compared between releases.
+//
+// Usage: SchedulerBenchmarks [--warmup n] [--iterations n] [--time ms] [--caregivers n,n..]
+//                            [--days n,n..] [--appointments n,n..] [--filter name] [--out file.csv]
+//                            [--label text]
+public class SchedulerBenchmarks {
+
+    private static final String PATIENT = "bench_patient";
+    private static final String PASSWORD = "bench_password";
+    private static final String VACCINE = "bench_vaccine";
+    private static final LocalDate FIRST_DAY = LocalDate.of(2030, 1, 1);
+
+    private final Harness harness;
+    private final String filter;
+    private final String label;
+    private final List<String[]> rows = new ArrayList<>();
+
+    public SchedulerBenchmarks(Harness harness, String filter, String label) {
+        this.harness = harness;
+        this.filter = filter;
+        this.label = label;
+    }
+
+    public static void main(String[] args) {
+        int warmup = 2;
+        int iterations = 3;
+        long time = 500;
+        int[] caregivers = {10, 100};
+        int[] days = {30};
+        int[] appointments = {100, 1000};
+        String filter = null;
+        String out = "benchmarks.csv";
+        String label = "local";
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 >= args.length) {
+                    System.out.println("Missing value for " + args[i]);
+                    return;
+                }
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--warmup":
+                        warmup = Integer.parseInt(value);
+                        break;
+                    case "--iterations":
+                        iterations = Integer.parseInt(value);
+                        break;
+                    case "--time":
+                        time = Long.parseLong(value);
+                        break;
+                    case "--caregivers":
+                        caregivers = parseSizes(value);
+                        break;
+                    case "--days":
+                        days = parseSizes(value);
+                        break;
+                    case "--appointments":
+                        appointments = parseSizes(value);
+                        break;
+                    case "--filter":
+                        filter = value;
+                        break;
+                    case "--out":
+                        out = value;
+                        break;
+                    case "--label":
+                        label = value;
+                        break;
+                    default:
+                        System.out.println("Unknown option: " + args[i]);
+                        return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Please enter valid numbers!");
+            return;
+        }
+        if (warmup < 0 || iterations <= 0 || time <= 0) {
+            System.out.println("Iterations and time must be positive!");
+            return;
+        }
+
+        SchedulerBenchmarks benchmarks = new SchedulerBenchmarks(new Harness(warmup, iterations, time), filter, label);
+        try {
+            boolean first = true;
+            for (int c : caregivers) {
+                for (int d : days) {
+                    for (int a : appointments) {
+                        benchmarks.run(c, d, a, first);
+                        first = false;
+                    }
+                }
+            }
+            benchmarks.writeCsv(out);
+            System.out.println("Results appended to " + out);
+        } catch (Exception e) {
+            System.out.println("Benchmark failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    public void run(int caregivers, int days, int appointments, boolean includeStatic) throws Exception {
+        System.out.println("# caregivers=" + caregivers + " days=" + days + " appointments=" + appointments);
+        Fixture fixture = new Fixture(caregivers, days, appointments);
+
+        Map<String, Callable<Object>> benchmarks = new LinkedHashMap<>();
+        if (includeStatic) {
+            byte[] salt = Util.generateSalt();
+            byte[] padded = Arrays.copyOf(Util.generateHash(PASSWORD, salt), 32);
+            Scheduler anonymous = new Scheduler(fixture.discard);
+            benchmarks.put("generate_hash", () -> Util.generateHash(PASSWORD, salt));
+            benchmarks.put("trim", () -> Util.trim(padded));
+            // not logged in, so reserve stops at its first check: this is the split and dispatch
+            benchmarks.put("parse", () -> anonymous.execute("reserve 2030-01-01 " + VACCINE));
+        }
+        int[] next = {0};
+        benchmarks.put("search", () ->
+                fixture.session.execute("search_caregiver_schedule " + fixture.dates[next[0]++ % days]));
+        benchmarks.put("search_store", () ->
+                Repositories.availabilities().findOpenSlots(fixture.dates[next[0]++ % days]));
+        benchmarks.put("reserve_cancel", () -> {
+            Date date = fixture.dates[next[0]++ % days];
+            Reservation reservation = ReservationService.reserve(date, VACCINE, PATIENT);
+            ReservationService.cancel(new Appointment.AppointmentBuilder(reservation.getAppointmentID(), date,
+                    reservation.getCaregiverUsername(), PATIENT, VACCINE).build());
+            return reservation;
+        });
+        benchmarks.put("show_appointments", () -> fixture.session.execute("show_appointments"));
+
+        for (Map.Entry<String, Callable<Object>> benchmark : benchmarks.entrySet()) {
+            if (filter != null && !benchmark.getKey().contains(filter)) {
+                continue;
+            }
+            Harness.Result result = harness.measure(benchmark.getKey(), benchmark.getValue());
+            System.out.println(String.format("%-20s %14.1f +- %10.1f ns/op %14.1f ops/s",
+                    result.getName(), result.getMeanNanos(), result.getErrorNanos(), result.getOpsPerSecond()));
+            rows.add(new String[]{label, LocalDateTime.now().withNano(0).toString(), result.getName(),
+                    Integer.toString(caregivers), Integer.toString(days), Integer.toString(appointments),
+                    Integer.toString(result.getIterations()), String.format(Locale.ROOT, "%.1f", result.getMeanNanos()),
+                    String.format(Locale.ROOT, "%.1f", result.getErrorNanos()), String.format(Locale.ROOT, "%.1f", result.getOpsPerSecond())});
+        }
+    }
+
+    public void writeCsv(String file) throws IOException {
+        boolean header = !new File(file).exists();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file, true))) {
+            if (header) {
+                writer.println("label,timestamp,benchmark,caregivers,days,appointments,iterations," +
+                        "ns_per_op,error_ns,ops_per_s");
+            }
+            for (String[] row : rows) {
+                writer.println(String.join(",", row));
+            }
+        }
+    }
+
+    private static int[] parseSizes(String value) {
+        String[] parts = value.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i].trim());
+            if (sizes[i] <= 0) {
+                throw new NumberFormatException();
+            }
+        }
+        return sizes;
+    }
+
+    // A fresh memory store with the caregivers available on every day, enough doses for the
+    // seeded appointments plus headroom, and a logged-in patient session holding the appointments.
+    private static class Fixture {
+        private final PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        private final Date[] dates;
+        private final Scheduler session;
+
+        Fixture(int caregivers, int days, int appointments) throws SQLException {
+            Repositories.use(new MemoryStorage());
+            AvailabilityIndex.getInstance().clear();
+
+            byte[] salt = Util.generateSalt();
+            byte[] hash = Util.generateHash(PASSWORD, salt);
+            new Patient.PatientBuilder(PATIENT, salt, hash).build().saveToDB();
+            List<Caregiver> caregiverList = new ArrayList<>();
+            for (int i = 0; i < caregivers; i++) {
+                caregiverList.add(new Caregiver.CaregiverBuilder(String.format("caregiver%05d", i), salt, hash).build());
+            }
+            Caregiver.saveAllToDB(caregiverList, Availability.DEFAULT_BATCH_SIZE);
+
+            dates = new Date[days];
+            int doses = appointments / (days * caregivers) + 100;
+            List<Availability> availabilities = new ArrayList<>();
+            for (int d = 0; d < days; d++) {
+                dates[d] = Date.valueOf(FIRST_DAY.plusDays(d));
+                for (Caregiver caregiver : caregiverList) {
+                    availabilities.add(new Availability(dates[d], caregiver.getUsername(), doses));
+                }
+            }
+            Availability.saveAllToDB(availabilities, Availability.DEFAULT_BATCH_SIZE);
+            new Vaccine.VaccineBuilder(VACCINE, Integer.MAX_VALUE / 2).build().saveToDB();
+
+            for (int i = 0; i < appointments; i++) {
+                Reservation reservation = ReservationService.reserve(dates[i % days], VACCINE, PATIENT);
+                if (!reservation.isReserved()) {
+                    throw new IllegalStateException("Seeding stopped at " + i + " appointments: " + reservation.getStatus());
+                }
+            }
+
+            session = new Scheduler(discard);
+            session.execute("login_patient " + PATIENT + " " + PASSWORD);
+        }
+    }
+}
@@ -1,18 +1,60 @@
 package scheduler.db;
 
+import scheduler.util.Config;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+// Hands out pooled connections. Writes (and reads that decide a write) use createConnection(),
+// which always goes to the primary. Reads that only show data use createReadConnection(), which
+// goes to a read-only replica when ReadReplica is true (ReadServer, defaulting to the primary's
+// server, opened with ApplicationIntent=ReadOnly and a pool of its own). A replica may lag behind,
+// so a session that borrowed a write connection in the last ReadYourWritesMs keeps reading from the
+// primary and sees its own reservations and cancellations straight away.
 public class ConnectionManager {
 
-    private final String driverName = "com.microsoft.sqlserver.jdbc.SQLServerDriver";
-    private final String connectionUrl = "jdbc:sqlserver://" + System.getenv("Server") +
+    private static final String driverName = "com.microsoft.sqlserver.jdbc.SQLServerDriver";
+    private static final String connectionUrl = "jdbc:sqlserver://" + System.getenv("Server") +
             ".database.windows.net:1433;database=" + System.getenv("DBName");
-    private final String userName = System.getenv("UserID");
-    private final String userPass = System.getenv("Password");
+    private static final String userName = System.getenv("UserID");
+    private static final String userPass = System.getenv("Password");
+
+    // pool settings, all optional
+    private static final int POOL_MIN_SIZE = Config.getInt("PoolMinSize", 1);
+    private static final int POOL_MAX_SIZE = Config.getInt("PoolMaxSize", 10);
+    private static final long POOL_BORROW_TIMEOUT_MS = Config.getLong("PoolBorrowTimeoutMs", 5000);
+    private static final long POOL_IDLE_TIMEOUT_MS = Config.getLong("PoolIdleTimeoutMs", 300000);
+    private static final long POOL_VALIDATION_INTERVAL_MS = Config.getLong("PoolValidationIntervalMs", 1000);
+    private static final int POOL_VALIDATION_TIMEOUT_S = Config.getInt("PoolValidationTimeoutSeconds", 2);
+    // prepared statements kept per pooled connection, 0 disables the cache
+    private static final int STATEMENT_CACHE_SIZE = Config.getInt("StatementCacheSize", 32);
+
+    // read replica settings, all optional
+    private static final boolean READ_REPLICA = Config.getBoolean("ReadReplica", false);
+    private static final String readConnectionUrl = "jdbc:sqlserver://" +
+            Config.getString("ReadServer", System.getenv("Server")) + ".database.windows.net:1433;database=" +
+            System.getenv("DBName") + ";applicationIntent=ReadOnly";
+    private static final int READ_POOL_MIN_SIZE = Config.getInt("ReadPoolMinSize", POOL_MIN_SIZE);
+    private static final int READ_POOL_MAX_SIZE = Config.getInt("ReadPoolMaxSize", POOL_MAX_SIZE);
+    private static final long READ_YOUR_WRITES_MS = Config.getLong("ReadYourWritesMs", 5000);
+
+    private static volatile ConnectionPool pool = null;
+    private static volatile ConnectionPool readPool = null;
+    private static final ThreadLocal<Session> currentSession = new ThreadLocal<>();
+    // run at exit before the pools close, in the order they were added
+    private static final List<Runnable> shutdownTasks = new CopyOnWriteArrayList<>();
+
+    static {
+        // one hook, so whatever still needs the database at exit finishes before the pools close;
+        // the JVM runs separate hooks in no particular order
+        Runtime.getRuntime().addShutdownHook(new Thread(ConnectionManager::shutdown, "connection-pool-shutdown"));
+    }
 
     private Connection con = null;
+    // the session a write connection was borrowed for, marked again when it is handed back
+    private Session writer = null;
 
     public ConnectionManager() {
         try {
@@ -22,20 +64,137 @@ public class ConnectionManager {
         }
     }
 
+    // Borrows a connection from the shared pool; closeConnection() (or close() on the returned
+    // connection) hands it back instead of tearing down the physical connection.
     public Connection createConnection() {
+        writer = currentSession.get();
+        if (writer != null) {
+            writer.wrote();
+        }
+        try {
+            con = getPool().borrow();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return con;
+    }
+
+    // A connection for reads only, from the replica unless this thread's session wrote recently
+    // (see the class comment). Without ReadReplica this is the same as createConnection().
+    public Connection createReadConnection() {
+        Session session = currentSession.get();
+        boolean primary = !READ_REPLICA || (session != null && session.isPinned());
         try {
-            con = DriverManager.getConnection(connectionUrl, userName, userPass);
+            con = primary ? getPool().borrow() : getReadPool().borrow();
         } catch (SQLException e) {
             e.printStackTrace();
         }
         return con;
     }
 
+    // Runs this thread's database calls on behalf of the session until the previous session (the
+    // return value) is bound again.
+    public static Session bindSession(Session session) {
+        Session previous = currentSession.get();
+        if (session == null) {
+            currentSession.remove();
+        } else {
+            currentSession.set(session);
+        }
+        return previous;
+    }
+
+    // How long after a write the replica is assumed to be behind; 0 without a replica.
+    public static long getReplicaLagMillis() {
+        return READ_REPLICA ? READ_YOUR_WRITES_MS : 0;
+    }
+
     public void closeConnection() {
+        if (this.con == null) {
+            return;
+        }
         try {
             this.con.close();
         } catch (SQLException e) {
             e.printStackTrace();
+        } finally {
+            this.con = null;
+            // the write is committed by now, so the replica lag counts from here
+            if (writer != null) {
+                writer.wrote();
+                writer = null;
+            }
+        }
+    }
+
+    public static ConnectionPool getPool() {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (ConnectionManager.class) {
+                p = pool;
+                if (p == null) {
+                    p = new ConnectionPool(connectionUrl, userName, userPass, POOL_MIN_SIZE, POOL_MAX_SIZE,
+                            POOL_BORROW_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS, POOL_VALIDATION_INTERVAL_MS,
+                            POOL_VALIDATION_TIMEOUT_S, STATEMENT_CACHE_SIZE);
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    public static ConnectionPool getReadPool() {
+        ConnectionPool p = readPool;
+        if (p == null) {
+            synchronized (ConnectionManager.class) {
+                p = readPool;
+                if (p == null) {
+                    p = new ConnectionPool(readConnectionUrl, userName, userPass, READ_POOL_MIN_SIZE,
+                            READ_POOL_MAX_SIZE, POOL_BORROW_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS,
+                            POOL_VALIDATION_INTERVAL_MS, POOL_VALIDATION_TIMEOUT_S, STATEMENT_CACHE_SIZE);
+                    readPool = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    // Runs the task when the process exits, before the connection pools are shut down.
+    public static void beforeShutdown(Runnable task) {
+        shutdownTasks.add(task);
+    }
+
+    private static void shutdown() {
+        for (Runnable task : shutdownTasks) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        ConnectionPool p = pool;
+        if (p != null) {
+            p.shutdown();
+        }
+        p = readPool;
+        if (p != null) {
+            p.shutdown();
+        }
+    }
+
+    // One user's sequence of commands, for read-your-writes. Bound to the thread running a command
+    // with bindSession(); reads on threads without a session always go to the replica.
+    public static class Session {
+        private volatile long lastWriteAt = 0;
+
+        void wrote() {
+            lastWriteAt = System.currentTimeMillis();
+        }
+
+        // whether reads have to go to the primary to see this session's own writes
+        boolean isPinned() {
+            long at = lastWriteAt;
+            return at != 0 && System.currentTimeMillis() - at < READ_YOUR_WRITES_MS;
         }
     }
 }
@@ -0,0 +1,130 @@
+package scheduler.db;
+
+import scheduler.util.Config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hands out unique IDs from blocks reserved in the IdBlocks counter table. Reserving a block is a
+// single atomic UPDATE ... OUTPUT, after which IDs come from memory until the block runs out, so
+// the common case costs no database round trip and concurrent callers never see the same ID.
+// IDs left over in a block when the process exits are simply skipped. Once a migration has created
+// a sequence for the table, blocks are taken from the sequence with sp_sequence_get_range instead,
+// in the same round trip.
+public class IdAllocator {
+
+    private static final int DEFAULT_BLOCK_SIZE = Config.getInt("IdBlockSize", 50);
+
+    private static final IdAllocator appointmentIds =
+            new IdAllocator("Appointments", "AppointmentID", DEFAULT_BLOCK_SIZE, "AppointmentIds");
+
+    private final String tableName;
+    private final String columnName;
+    private final int blockSize;
+    private final String sequenceName;
+
+    private volatile Block current = new Block(0, 0);
+
+    public IdAllocator(String tableName, String columnName, int blockSize) {
+        this(tableName, columnName, blockSize, null);
+    }
+
+    public IdAllocator(String tableName, String columnName, int blockSize, String sequenceName) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive!");
+        }
+        this.tableName = tableName;
+        this.columnName = columnName;
+        this.blockSize = blockSize;
+        this.sequenceName = sequenceName;
+    }
+
+    public static IdAllocator forAppointments() {
+        return appointmentIds;
+    }
+
+    public int nextId() throws SQLException {
+        while (true) {
+            Block block = current;
+            long id = block.next.getAndIncrement();
+            if (id < block.limit) {
+                return (int) id;
+            }
+            synchronized (this) {
+                // another thread may have refilled while we were waiting for the lock
+                if (current == block) {
+                    current = reserveBlock();
+                }
+            }
+        }
+    }
+
+    private Block reserveBlock() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String reserve = "UPDATE IdBlocks SET NextValue = NextValue + ? OUTPUT deleted.NextValue WHERE Name = ?";
+        if (sequenceName != null) {
+            reserve = "SET NOCOUNT ON; " +
+                    "DECLARE @sequence nvarchar(255) = ?, @size INT = ?, @name varchar(255) = ?; " +
+                    "IF OBJECT_ID(@sequence, 'SO') IS NOT NULL " +
+                    "BEGIN " +
+                    "    DECLARE @first sql_variant; " +
+                    "    EXEC sp_sequence_get_range @sequence_name = @sequence, @range_size = @size, " +
+                    "        @range_first_value = @first OUTPUT; " +
+                    "    SELECT CAST(@first AS BIGINT); " +
+                    "END " +
+                    "ELSE " +
+                    "    UPDATE IdBlocks SET NextValue = NextValue + @size OUTPUT deleted.NextValue WHERE Name = @name;";
+        }
+        try {
+            PreparedStatement statement = con.prepareStatement(reserve);
+            int index = 1;
+            if (sequenceName != null) {
+                statement.setString(index++, sequenceName);
+            }
+            statement.setInt(index++, blockSize);
+            statement.setString(index, tableName);
+            ResultSet resultSet = statement.executeQuery();
+            if (!resultSet.next()) {
+                // first use against this database: seed the counter past any existing IDs, then retry
+                seedCounter(con);
+                resultSet = statement.executeQuery();
+                if (!resultSet.next()) {
+                    throw new SQLException("Failed to reserve a block of IDs for " + tableName + ".");
+                }
+            }
+            long start = resultSet.getLong(1);
+            long limit = start + blockSize;
+            if (limit - 1 > Integer.MAX_VALUE) {
+                throw new SQLException("IDs for " + tableName + " are exhausted.");
+            }
+            return new Block(start, limit);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private void seedCounter(Connection con) throws SQLException {
+        String seed = "INSERT INTO IdBlocks (Name, NextValue) " +
+                "SELECT ?, ISNULL(MAX(" + columnName + "), 0) + 1 FROM " + tableName + " " +
+                "WHERE NOT EXISTS (SELECT 1 FROM IdBlocks WITH (UPDLOCK, HOLDLOCK) WHERE Name = ?)";
+        PreparedStatement statement = con.prepareStatement(seed);
+        statement.setString(1, tableName);
+        statement.setString(2, tableName);
+        statement.executeUpdate();
+    }
+
+    private static class Block {
+        private final AtomicLong next;
+        private final long limit;
+
+        Block(long start, long limit) {
+            this.next = new AtomicLong(start);
+            this.limit = limit;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package scheduler.db;
+
+import scheduler.util.Config;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Brings the database schema up to date from versioned scripts named V<version>__<description>.sql
+// in the migrations directory (src/resources/migrations unless MigrationsDir says otherwise).
+// Applied versions are recorded in SchemaVersion with a checksum of the script; each pending script
+// runs in its own transaction, split into batches on lines that only say GO, and is recorded in the
+// same transaction. The SchemaVersion table is locked while a script runs, so processes starting at
+// the same time apply every version exactly once. A script that was changed after it was applied
+// stops the run, since the database no longer matches it.
+//
+// Usage: MigrationRunner [status | migrate] [--capture-plans <file>]
+//   --capture-plans writes the estimated plans of the appointment and availability lookups to the
+//   file before and after the pending migrations are applied.
+public class MigrationRunner {
+
+    // the schema version the code expects; raise it with every migration the code depends on
+    public static final int REQUIRED_VERSION = 8;
+
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final Pattern BATCH_SEPARATOR = Pattern.compile("(?im)^\\s*GO\\s*$");
+
+    // the lookups the indexes are for, with sample values so the optimizer plans a seek
+    private static final String[] PLAN_QUERIES = {
+            "SELECT * FROM Appointments WHERE PatientUsername = 'plan_sample'",
+            "SELECT * FROM Appointments WHERE CaregiverUsername = 'plan_sample'",
+            "SELECT MAX(AppointmentID) FROM Appointments WHERE PatientUsername = 'plan_sample'",
+            "SELECT TOP (100) * FROM Appointments WHERE PatientUsername = 'plan_sample' " +
+                    "AND (Date > '2000-01-01' OR (Date = '2000-01-01' AND AppointmentID > 0)) " +
+                    "ORDER BY Date, AppointmentID",
+            "SELECT * FROM Appointments WHERE CaregiverUsername = 'plan_sample' AND Date = '2000-01-01'",
+            "SELECT Username, ISNULL(DosesLeft, 1) AS DosesLeft FROM Availabilities " +
+                    "WHERE Time = '2000-01-01' AND ISNULL(DosesLeft, 1) > 0 ORDER BY Username",
+            "SELECT Time, DosesLeft FROM Availabilities WHERE Username = 'plan_sample'"
+    };
+
+    private final Path directory;
+    private final PrintStream out;
+
+    public MigrationRunner(Path directory, PrintStream out) {
+        this.directory = directory;
+        this.out = out;
+    }
+
+    public static MigrationRunner fromConfig(PrintStream out) {
+        return new MigrationRunner(Paths.get(Config.getString("MigrationsDir", "src/resources/migrations")), out);
+    }
+
+    // Called at startup: applies pending migrations unless MigrateOnStartup is false, then checks
+    // that the database is at REQUIRED_VERSION. Returns false when it is behind, since the code
+    // would then fail on tables and columns that aren't there; the process should not start. If
+    // the version can't be read at all, that is reported and the process carries on.
+    public static boolean migrateOnStartup() {
+        MigrationRunner runner = fromConfig(System.out);
+        if (Config.getBoolean("MigrateOnStartup", true)) {
+            if (!Files.isDirectory(runner.directory)) {
+                System.out.println("No migrations found at " + runner.directory.toAbsolutePath() +
+                        "; set MigrationsDir to the migrations directory.");
+            } else {
+                try {
+                    runner.migrate();
+                } catch (SQLException | IOException e) {
+                    System.out.println("Failed to migrate the database schema: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+        }
+        try {
+            int version = runner.currentVersion();
+            if (version < REQUIRED_VERSION) {
+                System.out.println("The database schema is at version " + version + " but version " +
+                        REQUIRED_VERSION + " is required; run MigrationRunner migrate.");
+                return false;
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to read the database schema version: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return true;
+    }
+
+    // The highest version applied to the database, 0 if none.
+    public int currentVersion() throws SQLException {
+        ensureVersionTable();
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            ResultSet resultSet = con.createStatement().executeQuery("SELECT ISNULL(MAX(Version), 0) FROM SchemaVersion");
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        } catch (SQLException e) {
+            throw new SQLException("Failed to read the SchemaVersion table.", e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Applies all pending migrations in version order and returns how many were applied.
+    public int migrate() throws SQLException, IOException {
+        List<Migration> migrations = load();
+        ensureVersionTable();
+        int applied = 0;
+        for (Migration migration : migrations) {
+            if (apply(migration)) {
+                out.println("Applied migration " + migration.version + " (" + migration.description + ")");
+                applied++;
+            }
+        }
+        if (applied == 0) {
+            out.println("Database schema is up to date.");
+        }
+        return applied;
+    }
+
+    public void printStatus() throws SQLException, IOException {
+        List<Migration> migrations = load();
+        ensureVersionTable();
+        Map<Integer, String> applied = appliedChecksums();
+        for (Migration migration : migrations) {
+            String checksum = applied.get(migration.version);
+            String state = checksum == null ? "pending"
+                    : checksum.equals(migration.checksum) ? "applied" : "applied, script changed since";
+            out.println(String.format("%4d  %-40s %s", migration.version, migration.description, state));
+        }
+    }
+
+    // Writes the estimated plan of each lookup in PLAN_QUERIES, without running the queries.
+    public void capturePlans(PrintStream plans, String label) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            Statement statement = con.createStatement();
+            // SHOWPLAN has to be the only statement in its batch
+            statement.execute("SET SHOWPLAN_TEXT ON");
+            try {
+                plans.println("==== " + label + " ====");
+                for (String query : PLAN_QUERIES) {
+                    plans.println("-- " + query);
+                    boolean isResultSet = statement.execute(query);
+                    while (true) {
+                        if (isResultSet) {
+                            ResultSet resultSet = statement.getResultSet();
+                            while (resultSet.next()) {
+                                plans.println(resultSet.getString(1));
+                            }
+                        } else if (statement.getUpdateCount() == -1) {
+                            break;
+                        }
+                        isResultSet = statement.getMoreResults();
+                    }
+                    plans.println();
+                }
+            } finally {
+                statement.execute("SET SHOWPLAN_TEXT OFF");
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Failed to capture query plans.", e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private List<Migration> load() throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        Map<Integer, Path> seen = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.sql")) {
+            for (Path file : files) {
+                Matcher matcher = SCRIPT_NAME.matcher(file.getFileName().toString());
+                if (!matcher.matches()) {
+                    throw new IOException("Migration " + file + " is not named V<version>__<description>.sql");
+                }
+                int version = Integer.parseInt(matcher.group(1));
+                Path previous = seen.put(version, file);
+                if (previous != null) {
+                    throw new IOException("Migrations " + previous + " and " + file + " have the same version.");
+                }
+                String script = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                migrations.add(new Migration(version, matcher.group(2).replace('_', ' '), script));
+            }
+        }
+        Collections.sort(migrations, (a, b) -> Integer.compare(a.version, b.version));
+        return migrations;
+    }
+
+    private void ensureVersionTable() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String create = "IF OBJECT_ID('SchemaVersion', 'U') IS NULL " +
+                "CREATE TABLE SchemaVersion (" +
+                "Version INT PRIMARY KEY, " +
+                "Description varchar(255), " +
+                "Checksum varchar(64), " +
+                "AppliedAt DATETIME2 DEFAULT SYSUTCDATETIME())";
+        try {
+            con.createStatement().execute(create);
+        } catch (SQLException e) {
+            throw new SQLException("Failed to create the SchemaVersion table.", e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private Map<Integer, String> appliedChecksums() throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            ResultSet resultSet = con.createStatement().executeQuery("SELECT Version, Checksum FROM SchemaVersion");
+            while (resultSet.next()) {
+                applied.put(resultSet.getInt(1), resultSet.getString(2));
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Failed to read the schema version.", e);
+        } finally {
+            cm.closeConnection();
+        }
+        return applied;
+    }
+
+    // Runs the migration unless it has been applied already; returns whether it ran.
+    private boolean apply(Migration migration) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            con.setAutoCommit(false);
+            // the table lock makes other processes wait here until this migration is committed
+            PreparedStatement check = con.prepareStatement(
+                    "SELECT Checksum FROM SchemaVersion WITH (TABLOCKX, HOLDLOCK) WHERE Version = ?");
+            check.setInt(1, migration.version);
+            ResultSet resultSet = check.executeQuery();
+            if (resultSet.next()) {
+                String appliedChecksum = resultSet.getString(1);
+                con.rollback();
+                if (migration.checksum.equals(appliedChecksum)) {
+                    return false;
+                }
+                throw new SQLException("The script was changed after it was applied.");
+            }
+            Statement statement = con.createStatement();
+            for (String batch : BATCH_SEPARATOR.split(migration.script)) {
+                if (!batch.trim().isEmpty()) {
+                    statement.execute(batch);
+                }
+            }
+            PreparedStatement record = con.prepareStatement(
+                    "INSERT INTO SchemaVersion (Version, Description, Checksum) VALUES (?, ?, ?)");
+            record.setInt(1, migration.version);
+            record.setString(2, migration.description);
+            record.setString(3, migration.checksum);
+            record.executeUpdate();
+            con.commit();
+            return true;
+        } catch (SQLException e) {
+            con.rollback();
+            throw new SQLException("Failed to apply migration " + migration.version +
+                    " (" + migration.description + ").", e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private static String checksum(String script) {
+        try {
+            // line endings and trailing whitespace don't change what a script does
+            String normalized = script.replace("\r\n", "\n").replaceAll("[ \t]+\n", "\n").trim();
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalized.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Migration {
+        private final int version;
+        private final String description;
+        private final String script;
+        private final String checksum;
+
+        Migration(int version, String description, String script) {
+            this.version = version;
+            this.description = description;
+            this.script = script;
+            this.checksum = checksum(script);
+        }
+    }
+
+    public static void main(String[] args) {
+        String mode = "migrate";
+        String planFile = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--capture-plans") && i + 1 < args.length) {
+                planFile = args[++i];
+            } else if (args[i].equals("status") || args[i].equals("migrate")) {
+                mode = args[i];
+            } else {
+                System.out.println("Usage: MigrationRunner [status | migrate] [--capture-plans <file>]");
+                System.exit(2);
+            }
+        }
+        MigrationRunner runner = fromConfig(System.out);
+        try {
+            if (mode.equals("status")) {
+                runner.printStatus();
+            } else if (planFile == null) {
+                runner.migrate();
+            } else {
+                try (PrintStream plans = new PrintStream(planFile, "UTF-8")) {
+                    runner.capturePlans(plans, "before");
+                    runner.migrate();
+                    runner.capturePlans(plans, "after");
+                }
+                System.out.println("Query plans written to " + planFile);
+            }
+        } catch (SQLException | IOException e) {
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,214 @@
+package scheduler.db;
+
+import scheduler.metrics.CommandMetrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+// A physical connection owned by the ConnectionPool. Callers never see this object directly: each
+// borrow hands out a fresh proxy (a "lease") whose close() returns the connection to the pool.
+class PooledConnection {
+
+    private final ConnectionPool pool;
+    private final Connection physical;
+    private final StatementCache statementCache;
+    private final long createdAt;
+    private volatile long lastReturnedAt;
+    private volatile long lastValidatedAt;
+    private volatile boolean broken = false;
+    // session settings as the driver opened the connection, put back once a borrower changed them
+    private final int isolation;
+    private final boolean readOnly;
+    private final String catalog;
+    private volatile boolean settingsChanged = false;
+
+    // statements opened during the current lease, closed when the connection goes back to the pool
+    private final List<Statement> openStatements = new ArrayList<>();
+
+    PooledConnection(ConnectionPool pool, Connection physical, StatementCache statementCache) throws SQLException {
+        this.pool = pool;
+        this.physical = physical;
+        this.statementCache = statementCache;
+        this.isolation = physical.getTransactionIsolation();
+        this.readOnly = physical.isReadOnly();
+        this.catalog = physical.getCatalog();
+        this.createdAt = System.currentTimeMillis();
+        this.lastReturnedAt = this.createdAt;
+        this.lastValidatedAt = this.createdAt;
+    }
+
+    Connection getPhysical() {
+        return physical;
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    long getLastReturnedAt() {
+        return lastReturnedAt;
+    }
+
+    long getLastValidatedAt() {
+        return lastValidatedAt;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    void markBroken() {
+        broken = true;
+    }
+
+    boolean validate(int timeoutSeconds) {
+        try {
+            if (!broken && physical.isValid(timeoutSeconds)) {
+                lastValidatedAt = System.currentTimeMillis();
+                return true;
+            }
+        } catch (SQLException e) {
+            // fall through, the connection is unusable
+        }
+        broken = true;
+        return false;
+    }
+
+    Connection lease() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Lease());
+    }
+
+    // Undo anything the borrower left behind so the next borrower starts from a clean connection.
+    void reset() {
+        synchronized (openStatements) {
+            for (Statement statement : openStatements) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    // the statement is going away anyway
+                }
+            }
+            openStatements.clear();
+        }
+        if (statementCache != null) {
+            statementCache.checkinAll();
+        }
+        try {
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            broken = true;
+        }
+        if (settingsChanged && !broken) {
+            try {
+                physical.setTransactionIsolation(isolation);
+                physical.setReadOnly(readOnly);
+                if (catalog != null) {
+                    physical.setCatalog(catalog);
+                }
+                settingsChanged = false;
+            } catch (SQLException e) {
+                broken = true;
+            }
+        }
+        lastReturnedAt = System.currentTimeMillis();
+    }
+
+    void closePhysical() {
+        if (statementCache != null) {
+            statementCache.closeAll();
+        }
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            // nothing left to do with a connection we are discarding
+        }
+    }
+
+    private class Lease implements InvocationHandler {
+        private boolean closed = false;
+        // statements handed out during this lease when the slow query log is on
+        private final List<StatementTracer> tracers = new ArrayList<>();
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                if (!closed) {
+                    closed = true;
+                    for (StatementTracer tracer : tracers) {
+                        tracer.complete();
+                    }
+                    pool.release(PooledConnection.this);
+                }
+                return null;
+            }
+            if (name.equals("isClosed")) {
+                return closed || physical.isClosed();
+            }
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (name.equals("toString")) {
+                return "PooledConnection[" + physical + "]";
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool.");
+            }
+            if (name.equals("prepareStatement") || name.equals("createStatement") || name.equals("prepareCall")) {
+                CommandMetrics.statementPrepared();
+            }
+            if (name.equals("setTransactionIsolation") || name.equals("setReadOnly") || name.equals("setCatalog")) {
+                settingsChanged = true;
+            }
+            if (statementCache != null && name.equals("prepareStatement") && args.length == 1) {
+                PreparedStatement cached = statementCache.checkout((String) args[0]);
+                if (cached != null) {
+                    return trace(cached, args);
+                }
+            }
+            try {
+                Object result = method.invoke(physical, args);
+                if (result instanceof Statement) {
+                    synchronized (openStatements) {
+                        openStatements.add((Statement) result);
+                    }
+                    return trace((Statement) result, args);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    String state = ((SQLException) cause).getSQLState();
+                    // SQLSTATE class 08 means the connection itself failed
+                    if (state != null && state.startsWith("08")) {
+                        broken = true;
+                    }
+                }
+                throw cause;
+            }
+        }
+
+        private Statement trace(Statement statement, Object[] args) {
+            if (!SlowQueryLog.getInstance().isEnabled()) {
+                return statement;
+            }
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            return StatementTracer.wrap(statement, sql, tracers);
+        }
+    }
+}
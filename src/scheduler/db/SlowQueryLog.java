@@ -0,0 +1,151 @@
+package scheduler.db;
+
+import scheduler.util.Config;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Asynchronous, size-rotated log of statements that took longer than SlowQueryThresholdMs (execute
+// plus fetch time, see StatementTracer). Callers only enqueue a line; a daemon thread writes it, so
+// a slow disk never adds to command latency, and lines are dropped (and counted) rather than block
+// if the writer falls behind. When the file reaches SlowQueryLogMaxBytes it is renamed to .1, older
+// files shift up to SlowQueryLogFiles, and a new file is started. A negative threshold (the
+// default) turns tracing off entirely.
+public class SlowQueryLog {
+
+    private static final SlowQueryLog instance = new SlowQueryLog(
+            Config.getLong("SlowQueryThresholdMs", -1),
+            Config.getString("SlowQueryLogFile", "slow-query.log"),
+            Config.getLong("SlowQueryLogMaxBytes", 10L * 1024 * 1024),
+            Config.getInt("SlowQueryLogFiles", 5));
+
+    private final long thresholdNanos;
+    private final File file;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(10000);
+    private final AtomicLong logged = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Object startLock = new Object();
+    private volatile Thread writer = null;
+
+    public SlowQueryLog(long thresholdMillis, String file, long maxBytes, int maxFiles) {
+        this.thresholdNanos = thresholdMillis < 0 ? -1 : thresholdMillis * 1_000_000;
+        this.file = new File(file);
+        this.maxBytes = maxBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+
+    public static SlowQueryLog getInstance() {
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return thresholdNanos >= 0;
+    }
+
+    public boolean isSlow(long nanos) {
+        return isEnabled() && nanos >= thresholdNanos;
+    }
+
+    public void log(String line) {
+        start();
+        if (queue.offer(line)) {
+            logged.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public long getLoggedCount() {
+        return logged.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void start() {
+        if (writer != null) {
+            return;
+        }
+        synchronized (startLock) {
+            if (writer == null) {
+                Thread t = new Thread(this::run, "slow-query-log");
+                t.setDaemon(true);
+                t.start();
+                writer = t;
+            }
+        }
+    }
+
+    private void run() {
+        Writer out = null;
+        long size = 0;
+        while (true) {
+            String line;
+            try {
+                line = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                if (out == null) {
+                    out = open();
+                    size = file.length();
+                }
+                out.write(line);
+                out.write(System.lineSeparator());
+                size += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                if (queue.isEmpty()) {
+                    out.flush();
+                }
+                if (size >= maxBytes) {
+                    out.close();
+                    out = null;
+                    rotate();
+                }
+            } catch (IOException e) {
+                System.out.println("Error occurred when writing the slow query log: " + e.getMessage());
+                // drop the broken writer so the next line reopens the file without leaking its handle
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException closeError) {
+                        // already reported above
+                    }
+                }
+                out = null;
+            }
+        }
+    }
+
+    private Writer open() throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    }
+
+    private void rotate() {
+        File oldest = new File(file.getPath() + "." + maxFiles);
+        if (oldest.exists() && !oldest.delete()) {
+            System.out.println("Could not delete " + oldest);
+        }
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            File from = new File(file.getPath() + "." + i);
+            if (from.exists() && !from.renameTo(new File(file.getPath() + "." + (i + 1)))) {
+                System.out.println("Could not rotate " + from);
+            }
+        }
+        if (!file.renameTo(new File(file.getPath() + ".1"))) {
+            System.out.println("Could not rotate " + file);
+        }
+    }
+}
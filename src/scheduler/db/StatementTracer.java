@@ -0,0 +1,166 @@
+package scheduler.db;
+
+import scheduler.metrics.CommandMetrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Wraps a statement handed out by a pooled connection and measures each execution: time in the
+// execute call, time spent fetching rows from its result sets, rows returned (or updated) and
+// batch size. An execution is complete when the statement runs again, is closed, or its
+// connection goes back to the pool; if it took longer than the threshold it is written to the
+// SlowQueryLog with the command that ran it. Bind parameters are recorded by index and type only,
+// never by value, so the log holds no patient data.
+class StatementTracer implements InvocationHandler {
+
+    private final Statement target;
+    private final String command;
+    private String sql;
+
+    // the execution being measured
+    private boolean pending = false;
+    private long executeNanos;
+    private long fetchNanos;
+    private long rows;
+    private int batches;
+    private final Map<Integer, String> parameters = new TreeMap<>();
+
+    private StatementTracer(Statement target, String sql) {
+        this.target = target;
+        this.sql = sql;
+        this.command = CommandMetrics.currentCommand();
+    }
+
+    // The tracer is added to the lease's list so the lease can complete it when it is closed.
+    static Statement wrap(Statement statement, String sql, List<StatementTracer> tracers) {
+        StatementTracer tracer = new StatementTracer(statement, sql);
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        tracers.add(tracer);
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{type}, tracer);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (name.equals("equals")) {
+            return proxy == args[0];
+        }
+        if (name.equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        }
+        if (name.startsWith("execute")) {
+            return execute(method, args);
+        }
+        if (name.equals("close")) {
+            complete();
+        } else if (name.equals("addBatch")) {
+            batches++;
+        } else if (name.equals("setNull") && args.length >= 2) {
+            parameters.put((Integer) args[0], "null");
+        } else if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+            parameters.put((Integer) args[0], args[1] == null ? "null" : name.substring(3));
+        }
+        Object result = call(method, args);
+        if (result instanceof ResultSet) {
+            return traceResultSet((ResultSet) result);
+        }
+        return result;
+    }
+
+    private Object execute(Method method, Object[] args) throws Throwable {
+        // a new execution: report the previous one first
+        complete();
+        if (args != null && args.length >= 1 && args[0] instanceof String) {
+            sql = (String) args[0];
+        }
+        pending = true;
+        long start = System.nanoTime();
+        try {
+            Object result = call(method, args);
+            if (result instanceof ResultSet) {
+                return traceResultSet((ResultSet) result);
+            }
+            if (result instanceof Integer || result instanceof Long) {
+                rows += ((Number) result).longValue();
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    rows += Math.max(0, count);
+                }
+            }
+            return result;
+        } finally {
+            executeNanos += System.nanoTime() - start;
+        }
+    }
+
+    // Writes the finished execution to the slow query log if it was slow; also called by the lease.
+    void complete() {
+        if (!pending) {
+            return;
+        }
+        long total = executeNanos + fetchNanos;
+        if (SlowQueryLog.getInstance().isSlow(total)) {
+            SlowQueryLog.getInstance().log(LocalDateTime.now() +
+                    " command=" + (command == null ? "-" : command) +
+                    " total_ms=" + millis(total) +
+                    " execute_ms=" + millis(executeNanos) +
+                    " fetch_ms=" + millis(fetchNanos) +
+                    " rows=" + rows +
+                    (batches > 0 ? " batches=" + batches : "") +
+                    " params=" + parameters.values() +
+                    " sql=" + (sql == null ? "-" : sql.replaceAll("\\s+", " ").trim()));
+        }
+        pending = false;
+        executeNanos = 0;
+        fetchNanos = 0;
+        rows = 0;
+        batches = 0;
+        parameters.clear();
+    }
+
+    private ResultSet traceResultSet(ResultSet resultSet) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("next")) {
+                        long start = System.nanoTime();
+                        try {
+                            Object more = call(resultSet, method, args);
+                            if (Boolean.TRUE.equals(more)) {
+                                rows++;
+                            }
+                            return more;
+                        } finally {
+                            fetchNanos += System.nanoTime() - start;
+                        }
+                    }
+                    return call(resultSet, method, args);
+                });
+    }
+
+    private Object call(Method method, Object[] args) throws Throwable {
+        return call(target, method, args);
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+}
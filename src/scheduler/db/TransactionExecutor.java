@@ -0,0 +1,153 @@
+package scheduler.db;
+
+import scheduler.metrics.CommandMetrics;
+import scheduler.util.Config;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Runs a transaction again when SQL Server aborted it for a reason that goes away by itself: it was
+// chosen as a deadlock victim (1205), waited too long for a lock (1222) or lost an update conflict
+// under snapshot isolation (3960). The transaction has been rolled back in all three cases, so it
+// is safe to run it again as a whole. Attempts are spaced by exponential backoff with full jitter,
+// so transactions that collided once don't collide again in lockstep, and stop after
+// TransactionMaxAttempts or once TransactionRetryBudgetMs has gone by; the last error is then
+// thrown. Any other error is thrown straight away. Retries are counted against the running command.
+public class TransactionExecutor {
+
+    public static final int DEADLOCK_VICTIM = 1205;
+    public static final int LOCK_TIMEOUT = 1222;
+    public static final int SNAPSHOT_CONFLICT = 3960;
+
+    private static final TransactionExecutor instance = new TransactionExecutor(
+            Config.getInt("TransactionMaxAttempts", 5),
+            Config.getLong("TransactionRetryBudgetMs", 2000),
+            Config.getLong("TransactionBackoffBaseMs", 10),
+            Config.getLong("TransactionBackoffMaxMs", 500));
+
+    private final int maxAttempts;
+    private final long budgetMillis;
+    private final long backoffBaseMillis;
+    private final long backoffMaxMillis;
+
+    // metrics
+    private final LongAdder deadlocks = new LongAdder();
+    private final LongAdder lockTimeouts = new LongAdder();
+    private final LongAdder snapshotConflicts = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    public TransactionExecutor(int maxAttempts, long budgetMillis, long backoffBaseMillis, long backoffMaxMillis) {
+        if (maxAttempts <= 0 || budgetMillis < 0 || backoffBaseMillis <= 0 || backoffMaxMillis < backoffBaseMillis) {
+            throw new IllegalArgumentException("Invalid retry settings");
+        }
+        this.maxAttempts = maxAttempts;
+        this.budgetMillis = budgetMillis;
+        this.backoffBaseMillis = backoffBaseMillis;
+        this.backoffMaxMillis = backoffMaxMillis;
+    }
+
+    public static TransactionExecutor getInstance() {
+        return instance;
+    }
+
+    public interface Transaction<T> {
+        T run() throws SQLException;
+    }
+
+    public <T> T execute(Transaction<T> transaction) throws SQLException {
+        long began = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = transaction.run();
+                if (attempt > 1) {
+                    recovered.increment();
+                }
+                return result;
+            } catch (SQLException e) {
+                int errorCode = transientErrorCode(e);
+                if (errorCode == 0) {
+                    throw e;
+                }
+                count(errorCode);
+                // full jitter: anywhere from nothing up to the exponential bound
+                long bound = Math.min(backoffMaxMillis, backoffBaseMillis << Math.min(attempt - 1, 20));
+                long sleepMillis = ThreadLocalRandom.current().nextLong(bound + 1);
+                long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began);
+                if (attempt >= maxAttempts || elapsedMillis + sleepMillis > budgetMillis) {
+                    exhausted.increment();
+                    throw e;
+                }
+                CommandMetrics.transactionRetried();
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // The SQL Server error code that makes the exception worth retrying, or 0. The repositories
+    // wrap driver exceptions in their own, so the whole cause chain is searched, along with the
+    // chained exceptions a batch reports.
+    public static int transientErrorCode(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                for (SQLException e = (SQLException) t; e != null; e = e.getNextException()) {
+                    int code = e.getErrorCode();
+                    if (code == DEADLOCK_VICTIM || code == LOCK_TIMEOUT || code == SNAPSHOT_CONFLICT) {
+                        return code;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+
+    private void count(int errorCode) {
+        if (errorCode == DEADLOCK_VICTIM) {
+            deadlocks.increment();
+        } else if (errorCode == LOCK_TIMEOUT) {
+            lockTimeouts.increment();
+        } else {
+            snapshotConflicts.increment();
+        }
+    }
+
+    public long getDeadlockCount() {
+        return deadlocks.sum();
+    }
+
+    public long getLockTimeoutCount() {
+        return lockTimeouts.sum();
+    }
+
+    public long getSnapshotConflictCount() {
+        return snapshotConflicts.sum();
+    }
+
+    // transactions that succeeded after at least one retry
+    public long getRecoveredCount() {
+        return recovered.sum();
+    }
+
+    // transactions that failed with a transient error after running out of attempts or time
+    public long getExhaustedCount() {
+        return exhausted.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionExecutor{" +
+                "deadlocks=" + getDeadlockCount() +
+                ", lockTimeouts=" + getLockTimeoutCount() +
+                ", snapshotConflicts=" + getSnapshotConflictCount() +
+                ", recovered=" + getRecoveredCount() +
+                ", exhausted=" + getExhaustedCount() +
+                '}';
+    }
+}
@@ -0,0 +1,169 @@
+package scheduler.metrics;
+
+import scheduler.util.Config;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Per-command latency, error and JDBC usage metrics. Scheduler.execute opens a Scope around each
+// command; while it is open, the connection pool and the connection proxies report every borrow and
+// statement to it through a thread-local, so nothing has to pass a context around. Each command's
+// stats are published as an MBean (scheduler:type=CommandMetrics,command=<name>) next to this
+// registry (scheduler:type=CommandMetrics), whose dump() returns the same table as the metrics
+// command. Set MetricsJmxEnabled=false to keep the MBeans out of the platform server.
+public class CommandMetrics implements CommandMetricsMBean {
+
+    private static final String DOMAIN = "scheduler";
+    private static final boolean JMX_ENABLED = Config.getBoolean("MetricsJmxEnabled", true);
+
+    private static final CommandMetrics instance = new CommandMetrics();
+    private static final ThreadLocal<Scope> current = new ThreadLocal<>();
+
+    private final ConcurrentHashMap<String, CommandStats> stats = new ConcurrentHashMap<>();
+
+    private CommandMetrics() {
+        register(this, "type=CommandMetrics");
+    }
+
+    public static CommandMetrics getInstance() {
+        return instance;
+    }
+
+    // Starts measuring a command on this thread; the caller must end() the scope in a finally block.
+    public static Scope begin(String command) {
+        Scope scope = new Scope(command, current.get());
+        current.set(scope);
+        return scope;
+    }
+
+    // The innermost command running on this thread, or null outside of a command.
+    public static String currentCommand() {
+        Scope scope = current.get();
+        return scope == null ? null : scope.command;
+    }
+
+    public static void connectionBorrowed() {
+        Scope scope = current.get();
+        if (scope != null) {
+            scope.connections++;
+        }
+    }
+
+    public static void statementPrepared() {
+        Scope scope = current.get();
+        if (scope != null) {
+            scope.statements++;
+        }
+    }
+
+    // A transaction of the running command is about to be retried (see TransactionExecutor).
+    public static void transactionRetried() {
+        Scope scope = current.get();
+        if (scope != null) {
+            scope.retries++;
+        }
+    }
+
+    // The running command failed, even though it handled the exception itself.
+    public static void errorOccurred() {
+        Scope scope = current.get();
+        if (scope != null) {
+            scope.failed = true;
+        }
+    }
+
+    public CommandStats getStats(String command) {
+        CommandStats s = stats.get(command);
+        if (s == null) {
+            s = stats.computeIfAbsent(command, c -> {
+                CommandStats created = new CommandStats(c);
+                register(created, "type=CommandMetrics,command=" + c);
+                return created;
+            });
+        }
+        return s;
+    }
+
+    @Override
+    public String[] getCommands() {
+        return new TreeMap<>(stats).keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public String dump() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+        dump(out);
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    public void dump(PrintStream out) {
+        out.println(String.format("%-26s %8s %7s %9s %9s %9s %9s %9s %8s %8s %7s", "command", "count", "errors",
+                "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms", "conn/cmd", "stmt/cmd", "retries"));
+        for (Map.Entry<String, CommandStats> entry : new TreeMap<>(stats).entrySet()) {
+            CommandStats s = entry.getValue();
+            out.println(String.format(Locale.ROOT, "%-26s %8d %7d %9.3f %9.3f %9.3f %9.3f %9.3f %8.2f %8.2f %7d",
+                    entry.getKey(), s.getCount(), s.getErrorCount(), s.getMeanMillis(), s.getP50Millis(),
+                    s.getP95Millis(), s.getP99Millis(), s.getMaxMillis(), s.getConnectionsPerCommand(),
+                    s.getStatementsPerCommand(), s.getRetryCount()));
+        }
+    }
+
+    @Override
+    public void reset() {
+        for (CommandStats s : stats.values()) {
+            s.reset();
+        }
+    }
+
+    private static void register(Object mbean, String properties) {
+        if (!JMX_ENABLED) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(mbean, name);
+            }
+        } catch (JMException e) {
+            // metrics are still recorded and available through dump()
+            System.out.println("Could not register " + properties + " with JMX: " + e.getMessage());
+        }
+    }
+
+    public static class Scope {
+        private final String command;
+        private final Scope outer;
+        private final long startNanos = System.nanoTime();
+        // only touched by the thread that owns the scope
+        private int connections;
+        private int statements;
+        private int retries;
+        private boolean failed;
+
+        private Scope(String command, Scope outer) {
+            this.command = command;
+            this.outer = outer;
+        }
+
+        public void end() {
+            instance.getStats(command).record(System.nanoTime() - startNanos, failed, connections, statements,
+                    retries);
+            if (outer == null) {
+                current.remove();
+            } else {
+                current.set(outer);
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package scheduler.metrics;
+
+public interface CommandMetricsMBean {
+
+    String[] getCommands();
+
+    String dump();
+
+    void reset();
+}
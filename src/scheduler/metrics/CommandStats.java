@@ -0,0 +1,107 @@
+package scheduler.metrics;
+
+import scheduler.util.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters for one command; published as scheduler:type=CommandMetrics,command=<name>.
+public class CommandStats implements CommandStatsMBean {
+
+    private final String command;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder connections = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    CommandStats(String command) {
+        this.command = command;
+    }
+
+    void record(long nanos, boolean failed, int connectionsUsed, int statementsUsed, int retried) {
+        latency.record(nanos);
+        if (failed) {
+            errors.increment();
+        }
+        connections.add(connectionsUsed);
+        statements.add(statementsUsed);
+        retries.add(retried);
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    @Override
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return latency.getMeanNanos() / 1e6;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return latency.getPercentile(0.50, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public double getP95Millis() {
+        return latency.getPercentile(0.95, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latency.getPercentile(0.99, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latency.getMaxNanos() / 1e6;
+    }
+
+    @Override
+    public long getConnections() {
+        return connections.sum();
+    }
+
+    @Override
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    // transaction attempts that were run again after a transient error (see TransactionExecutor)
+    @Override
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    @Override
+    public double getConnectionsPerCommand() {
+        long count = getCount();
+        return count == 0 ? 0.0 : (double) getConnections() / count;
+    }
+
+    @Override
+    public double getStatementsPerCommand() {
+        long count = getCount();
+        return count == 0 ? 0.0 : (double) getStatements() / count;
+    }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        errors.reset();
+        connections.reset();
+        statements.reset();
+        retries.reset();
+    }
+}
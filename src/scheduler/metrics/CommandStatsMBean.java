@@ -0,0 +1,30 @@
+package scheduler.metrics;
+
+public interface CommandStatsMBean {
+
+    long getCount();
+
+    long getErrorCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    long getConnections();
+
+    long getStatements();
+
+    long getRetryCount();
+
+    double getConnectionsPerCommand();
+
+    double getStatementsPerCommand();
+
+    void reset();
+}
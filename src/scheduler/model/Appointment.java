@@ -1,12 +1,15 @@
 package scheduler.model;
 
-import scheduler.db.ConnectionManager;
+import scheduler.repository.Repositories;
+import scheduler.util.Config;
 
 import java.sql.*;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 public class Appointment {
+    private static final int PAGE_SIZE = Config.getInt("AppointmentPageSize", 100);
 
     private final int appointmentID;
     private final java.sql.Date date;
@@ -43,141 +46,157 @@ public class Appointment {
     }
 
     public void saveToDB() throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String addAppointment = "INSERT INTO Appointments VALUES (?, ?, ?, ?, ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addAppointment);
-            statement.setInt(1, this.appointmentID);
-            statement.setDate(2, this.date);
-            statement.setString(3, this.caregiverUsername);
-            statement.setString(4, this.patientUsername);
-            statement.setString(5, this.vaccineName);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException("Failed to save appointment to the database.");
-        } finally {
-            cm.closeConnection();
-        }
+        Repositories.appointments().save(this);
     }
 
     public static int getUniqueAppointmentID() throws SQLException {
-        return generateUniqueAppointmentID();
+        return Repositories.appointments().nextId();
     }
 
-    private static int generateUniqueAppointmentID() throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
+    public static List<Appointment> getAppointmentsForPatient(String patientUsername) throws SQLException {
+        return Repositories.appointments().findByPatient(patientUsername);
+    }
 
-        String selectMaxID = "SELECT MAX(AppointmentID) FROM Appointments";
-        try {
-            PreparedStatement statement = con.prepareStatement(selectMaxID);
-            ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                return resultSet.getInt(1) + 1;
-            }
-        } catch (SQLException e) {
-            throw new SQLException("Failed to generate a unique appointment ID.");
-        } finally {
-            cm.closeConnection();
-        }
-        return 1;
+    public static List<Appointment> getAppointmentsForCaregiver(String caregiverUsername) throws SQLException {
+        return Repositories.appointments().findByCaregiver(caregiverUsername);
     }
-    public static List<Appointment> getAppointmentsForPatient(String patientUsername) throws SQLException {
-        List<Appointment> appointments = new ArrayList<>();
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String sqlQuery = "SELECT * FROM Appointments WHERE PatientUsername = ?";
-        try {
-            PreparedStatement statement = con.prepareStatement(sqlQuery);
-            statement.setString(1, patientUsername);
-            ResultSet resultSet = statement.executeQuery();
-
-            while (resultSet.next()) {
-                int appointmentID = resultSet.getInt("AppointmentID");
-                Date date = resultSet.getDate("Date");
-                String caregiverUsername = resultSet.getString("CaregiverUsername");
-                String vaccineName = resultSet.getString("VaccineName");
-
-                Appointment appointment = new Appointment(appointmentID, date, caregiverUsername, patientUsername, vaccineName);
-                appointments.add(appointment);
+
+    // Walks the patient's appointments dated between from and to (either may be null) in date
+    // order, reading them a page at a time so only one page is ever held in memory.
+    public static AppointmentCursor streamForPatient(String patientUsername, Date from, Date to) {
+        return new AppointmentCursor(patientUsername, false, from, to, PAGE_SIZE);
+    }
+
+    public static AppointmentCursor streamForCaregiver(String caregiverUsername, Date from, Date to) {
+        return new AppointmentCursor(caregiverUsername, true, from, to, PAGE_SIZE);
+    }
+
+    public static Appointment getAppointmentById(int appointmentID) throws SQLException {
+        return Repositories.appointments().findById(appointmentID);
+    }
+
+    // Deletes the appointment and gives its dose back in the same transaction; the slot goes to the
+    // next patient waiting for the date, if any, booked as backfillID (-1 to skip the waitlist),
+    // whose new appointment is returned.
+    public Appointment removeFromDB(int backfillID) throws SQLException {
+        return Repositories.appointments().delete(this.appointmentID, backfillID);
+    }
+
+    @Override
+    public String toString() {
+        return "Appointment{" +
+                "appointmentID=" + appointmentID +
+                ", date=" + date +
+                ", caregiverUsername='" + caregiverUsername + '\'' +
+                ", patientUsername='" + patientUsername + '\'' +
+                ", vaccineName='" + vaccineName + '\'' +
+                '}';
+    }
+
+    // Keyset cursor over a user's appointments: each page is fetched on demand, starting after the
+    // last appointment of the previous one, and no connection is held between pages. Before the
+    // first page it can be told where to start: after a given (Date, AppointmentID), which costs the
+    // same as any other page, or a number of appointments in, which the first query skips.
+    public static class AppointmentCursor {
+        private final String username;
+        private final boolean caregiver;
+        private final Date from;
+        private final Date to;
+        private final int pageSize;
+
+        private List<Appointment> page = Collections.emptyList();
+        private int position = 0;
+        private Appointment last = null;
+        private Appointment returned = null;
+        private int offset = 0;
+        private boolean exhausted = false;
+
+        private AppointmentCursor(String username, boolean caregiver, Date from, Date to, int pageSize) {
+            if (pageSize <= 0) {
+                throw new IllegalArgumentException("Page size must be positive!");
             }
-        } finally {
-            cm.closeConnection();
+            this.username = username;
+            this.caregiver = caregiver;
+            this.from = from;
+            this.to = to;
+            this.pageSize = pageSize;
         }
 
-        return appointments;
-    }
+        public int getPageSize() {
+            return pageSize;
+        }
 
-    public static List<Appointment> getAppointmentsForCaregiver(String caregiverUsername) throws SQLException {
-        List<Appointment> appointments = new ArrayList<>();
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String sqlQuery = "SELECT * FROM Appointments WHERE CaregiverUsername = ?";
-        try {
-            PreparedStatement statement = con.prepareStatement(sqlQuery);
-            statement.setString(1, caregiverUsername);
-            ResultSet resultSet = statement.executeQuery();
-
-            while (resultSet.next()) {
-                int appointmentID = resultSet.getInt("AppointmentID");
-                Date date = resultSet.getDate("Date");
-                String patientUsername = resultSet.getString("PatientUsername");
-                String vaccineName = resultSet.getString("VaccineName");
-
-                Appointment appointment = new Appointment(appointmentID, date, caregiverUsername, patientUsername, vaccineName);
-                appointments.add(appointment);
+        public boolean hasNext() throws SQLException {
+            if (position < page.size()) {
+                return true;
+            }
+            if (exhausted) {
+                return false;
             }
-        } finally {
-            cm.closeConnection();
+            page = caregiver
+                    ? Repositories.appointments().findPageByCaregiver(username, from, to, last, offset, pageSize)
+                    : Repositories.appointments().findPageByPatient(username, from, to, last, offset, pageSize);
+            offset = 0;
+            position = 0;
+            // a short page is the last one, so there's no need to ask for an empty one after it
+            exhausted = page.size() < pageSize;
+            if (!page.isEmpty()) {
+                last = page.get(page.size() - 1);
+            }
+            return !page.isEmpty();
         }
 
-        return appointments;
-    }
+        public Appointment next() throws SQLException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            returned = page.get(position++);
+            return returned;
+        }
 
-    public static Appointment getAppointmentById(int appointmentID) throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String sqlQuery = "SELECT * FROM Appointments WHERE AppointmentID = ?";
-        try {
-            PreparedStatement statement = con.prepareStatement(sqlQuery);
-            statement.setInt(1, appointmentID);
-            ResultSet resultSet = statement.executeQuery();
-
-            if (resultSet.next()) {
-                int id = resultSet.getInt("AppointmentID");
-                Date date = resultSet.getDate("Date");
-                String caregiverUsername = resultSet.getString("CaregiverUsername");
-                String patientUsername = resultSet.getString("PatientUsername");
-                String vaccineName = resultSet.getString("VaccineName");
-
-                return new Appointment(id, date, caregiverUsername, patientUsername, vaccineName);
-            } else {
-                return null;
+        // Starts after the appointment with the given date and ID, e.g. the last one a previous
+        // listing showed.
+        public void startAfter(Date date, int appointmentID) {
+            checkNotStarted();
+            last = new AppointmentBuilder(appointmentID, date, null, null, null).build();
+        }
+
+        // Leaves out the first count appointments (after the start, if one was set).
+        public void skip(int count) {
+            checkNotStarted();
+            offset = count;
+        }
+
+        // The last appointment next() returned, or null; where a later listing can pick up.
+        public Appointment getLastReturned() {
+            return returned;
+        }
+
+        private void checkNotStarted() {
+            if (returned != null || !page.isEmpty() || exhausted) {
+                throw new IllegalStateException("The cursor has already started!");
             }
-        } finally {
-            cm.closeConnection();
         }
     }
 
-    public void removeFromDB() throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
+    public static class AppointmentBuilder {
+        private final int appointmentID;
+        private final Date date;
+        private final String caregiverUsername;
+        private final String patientUsername;
+        private final String vaccineName;
+
+        public AppointmentBuilder(int appointmentID, Date date, String caregiverUsername, String patientUsername,
+                                  String vaccineName) {
+            this.appointmentID = appointmentID;
+            this.date = date;
+            this.caregiverUsername = caregiverUsername;
+            this.patientUsername = patientUsername;
+            this.vaccineName = vaccineName;
+        }
 
-        String deleteAppointment = "DELETE FROM Appointments WHERE AppointmentID = ?";
-        try {
-            PreparedStatement statement = con.prepareStatement(deleteAppointment);
-            statement.setInt(1, this.appointmentID);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException("Failed to cancel appointment from the database.");
-        } finally {
-            cm.closeConnection();
+        public Appointment build() {
+            return new Appointment(appointmentID, date, caregiverUsername, patientUsername, vaccineName);
         }
     }
-
 }
@@ -0,0 +1,51 @@
+package scheduler.model;
+
+import scheduler.repository.Repositories;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Availability {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final java.sql.Date date;
+    private final String caregiverUsername;
+    private final int doses;
+
+    public Availability(Date date, String caregiverUsername, int doses) {
+        if (doses <= 0) {
+            throw new IllegalArgumentException("Doses must be positive!");
+        }
+        this.date = date;
+        this.caregiverUsername = caregiverUsername;
+        this.doses = doses;
+    }
+
+    public java.sql.Date getDate() {
+        return date;
+    }
+
+    public String getCaregiverUsername() {
+        return caregiverUsername;
+    }
+
+    public int getDoses() {
+        return doses;
+    }
+
+    // Inserts the availabilities in a single transaction, in batches of batchSize rows, skipping
+    // (date, caregiver) pairs that already exist. Returns the rows actually inserted.
+    public static List<Availability> saveAllToDB(List<Availability> availabilities, int batchSize) throws SQLException {
+        if (availabilities.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return Repositories.availabilities().saveAll(availabilities, batchSize);
+    }
+
+    @Override
+    public String toString() {
+        return date + " " + caregiverUsername + " " + doses;
+    }
+}
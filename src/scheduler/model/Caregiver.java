@@ -1,12 +1,19 @@
 package scheduler.model;
 
-import scheduler.db.ConnectionManager;
-import scheduler.util.Util;
+import scheduler.repository.Repositories;
+import scheduler.util.CredentialCache;
+import scheduler.util.PasswordHasher;
 
 import java.sql.*;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 public class Caregiver {
+    private static final String CREDENTIAL_ROLE = "caregiver";
+
     private final String username;
     private final byte[] salt;
     private final byte[] hash;
@@ -37,40 +44,48 @@ public class Caregiver {
     }
 
     public void saveToDB() throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String addCaregiver = "INSERT INTO Caregivers VALUES (? , ?, ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addCaregiver);
-            statement.setString(1, this.username);
-            statement.setBytes(2, this.salt);
-            statement.setBytes(3, this.hash);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
+        Repositories.caregivers().save(this);
+        CredentialCache.getInstance().invalidate(CREDENTIAL_ROLE, this.username);
+    }
+
+    // Inserts all caregivers in a single transaction, in batches of batchSize rows.
+    public static void saveAllToDB(List<Caregiver> caregivers, int batchSize) throws SQLException {
+        if (caregivers.isEmpty()) {
+            return;
+        }
+        Repositories.caregivers().saveAll(caregivers, batchSize);
+        for (Caregiver caregiver : caregivers) {
+            CredentialCache.getInstance().invalidate(CREDENTIAL_ROLE, caregiver.username);
         }
     }
 
+    // Returns the subset of usernames that already exist, looked up in bulk rather than one
+    // query per name.
+    public static Set<String> getExistingUsernames(Collection<String> usernames) throws SQLException {
+        return Repositories.caregivers().findExistingUsernames(usernames);
+    }
+
     public void uploadAvailability(Date d) throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String addAvailability = "INSERT INTO Availabilities VALUES (? , ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addAvailability);
-            statement.setDate(1, d);
-            statement.setString(2, this.username);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
+        List<Date> inserted = uploadAvailability(Collections.singletonList(d), 1);
+        if (inserted.isEmpty()) {
+            throw new SQLException("Availability already uploaded for " + d + ".");
         }
     }
 
+    // Inserts one Availabilities row per date with the given number of doses, skipping dates that
+    // were already uploaded, in a single batched transaction. Returns the dates actually inserted.
+    public List<Date> uploadAvailability(List<Date> dates, int doses) throws SQLException {
+        List<Availability> availabilities = new ArrayList<>();
+        for (Date d : dates) {
+            availabilities.add(new Availability(d, this.username, doses));
+        }
+        List<Date> inserted = new ArrayList<>();
+        for (Availability availability : Availability.saveAllToDB(availabilities, Availability.DEFAULT_BATCH_SIZE)) {
+            inserted.add(availability.getDate());
+        }
+        return inserted;
+    }
+
     public static class CaregiverBuilder {
         private final String username;
         private final byte[] salt;
@@ -99,35 +114,28 @@ public class Caregiver {
         }
 
         public Caregiver get() throws SQLException {
-            ConnectionManager cm = new ConnectionManager();
-            Connection con = cm.createConnection();
-
-            String getCaregiver = "SELECT Salt, Hash FROM Caregivers WHERE Username = ?";
-            try {
-                PreparedStatement statement = con.prepareStatement(getCaregiver);
-                statement.setString(1, this.username);
-                ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    byte[] salt = resultSet.getBytes("Salt");
-                    // we need to call Util.trim() to get rid of the paddings,
-                    // try to remove the use of Util.trim() and you'll see :)
-                    byte[] hash = Util.trim(resultSet.getBytes("Hash"));
-                    // check if the password matches
-                    byte[] calculatedHash = Util.generateHash(password, salt);
-                    if (!Arrays.equals(hash, calculatedHash)) {
-                        return null;
-                    } else {
-                        this.salt = salt;
-                        this.hash = hash;
-                        return new Caregiver(this);
-                    }
-                }
+            // a recent successful login with the same password needs neither the lookup nor the hash
+            byte[][] cached = CredentialCache.getInstance().lookup(CREDENTIAL_ROLE, username, password);
+            if (cached != null) {
+                this.salt = cached[0];
+                this.hash = cached[1];
+                return new Caregiver(this);
+            }
+
+            Caregiver stored = Repositories.caregivers().find(this.username);
+            if (stored == null) {
+                return null;
+            }
+            byte[] salt = stored.getSalt();
+            byte[] hash = stored.getHash();
+            // check if the password matches
+            if (!PasswordHasher.verify(password, salt, hash)) {
                 return null;
-            } catch (SQLException e) {
-                throw new SQLException();
-            } finally {
-                cm.closeConnection();
             }
+            this.salt = salt;
+            this.hash = hash;
+            CredentialCache.getInstance().put(CREDENTIAL_ROLE, username, password, salt, hash);
+            return new Caregiver(this);
         }
     }
 }
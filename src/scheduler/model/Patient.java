@@ -1,10 +1,15 @@
 package scheduler.model;
-import scheduler.db.ConnectionManager;
-import scheduler.util.Util;
+import scheduler.repository.Repositories;
+import scheduler.util.CredentialCache;
+import scheduler.util.PasswordHasher;
 
 import java.sql.*;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 public class Patient {
+    private static final String CREDENTIAL_ROLE = "patient";
+
     private final String username;
     private final byte[] salt;
     private final byte[] hash;
@@ -36,78 +41,37 @@ public class Patient {
     }
 
     public void saveToDB() throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String addPatient = "INSERT INTO Patients VALUES (? , ?, ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addPatient);
-            statement.setString(1, this.username);
-            statement.setBytes(2, this.salt);
-            statement.setBytes(3, this.hash);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
-        }
+        Repositories.patients().save(this);
+        CredentialCache.getInstance().invalidate(CREDENTIAL_ROLE, this.username);
     }
 
-    public void uploadAvailability(Date d) throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String addAvailability = "INSERT INTO Availabilities VALUES (? , ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addAvailability);
-            statement.setDate(1, d);
-            statement.setString(2, this.username);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
+    // Inserts all patients in a single transaction, in batches of batchSize rows.
+    public static void saveAllToDB(List<Patient> patients, int batchSize) throws SQLException {
+        if (patients.isEmpty()) {
+            return;
+        }
+        Repositories.patients().saveAll(patients, batchSize);
+        for (Patient patient : patients) {
+            CredentialCache.getInstance().invalidate(CREDENTIAL_ROLE, patient.username);
         }
     }
 
+    // Returns the subset of usernames that already exist, looked up in bulk rather than one
+    // query per name.
+    public static Set<String> getExistingUsernames(Collection<String> usernames) throws SQLException {
+        return Repositories.patients().findExistingUsernames(usernames);
+    }
+
     public int getLatestAppointmentID() throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String selectLatestAppointmentID = "SELECT MAX(AppointmentID) FROM Appointments WHERE PatientUsername = ?";
-        try {
-            PreparedStatement statement = con.prepareStatement(selectLatestAppointmentID);
-            statement.setString(1, this.username);
-            ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                return resultSet.getInt(1);
-            }
-        } catch (SQLException e) {
-            throw new SQLException("Failed to retrieve the latest appointment ID.");
-        } finally {
-            cm.closeConnection();
-        }
-        return -1;
+        return Repositories.appointments().findLatestIdForPatient(this.username);
     }
 
     public String getCaregiverUsername() throws SQLException {
         int latestAppointmentID = getLatestAppointmentID();
         if (latestAppointmentID != -1) {
-            ConnectionManager cm = new ConnectionManager();
-            Connection con = cm.createConnection();
-
-            String selectCaregiverUsername = "SELECT CaregiverUsername FROM Appointments WHERE AppointmentID = ?";
-            try {
-                PreparedStatement statement = con.prepareStatement(selectCaregiverUsername);
-                statement.setInt(1, latestAppointmentID);
-                ResultSet resultSet = statement.executeQuery();
-                if (resultSet.next()) {
-                    return resultSet.getString(1);
-                }
-            } catch (SQLException e) {
-                throw new SQLException("Failed to retrieve caregiver's username.");
-            } finally {
-                cm.closeConnection();
+            Appointment appointment = Repositories.appointments().findById(latestAppointmentID);
+            if (appointment != null) {
+                return appointment.getCaregiverUsername();
             }
         }
         return null;
@@ -145,35 +109,28 @@ public class Patient {
         }
 
         public Patient get() throws SQLException {
-            ConnectionManager cm = new ConnectionManager();
-            Connection con = cm.createConnection();
-
-            String getPatient = "SELECT Salt, Hash FROM Patients WHERE Username = ?";
-            try {
-                PreparedStatement statement = con.prepareStatement(getPatient);
-                statement.setString(1, this.username);
-                ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    byte[] salt = resultSet.getBytes("Salt");
-                    // we need to call Util.trim() to get rid of the paddings,
-                    // try to remove the use of Util.trim() and you'll see :)
-                    byte[] hash = Util.trim(resultSet.getBytes("Hash"));
-                    // check if the password matches
-                    byte[] calculatedHash = Util.generateHash(password, salt);
-                    if (!Arrays.equals(hash, calculatedHash)) {
-                        return null;
-                    } else {
-                        this.salt = salt;
-                        this.hash = hash;
-                        return new Patient(this);
-                    }
-                }
+            // a recent successful login with the same password needs neither the lookup nor the hash
+            byte[][] cached = CredentialCache.getInstance().lookup(CREDENTIAL_ROLE, username, password);
+            if (cached != null) {
+                this.salt = cached[0];
+                this.hash = cached[1];
+                return new Patient(this);
+            }
+
+            Patient stored = Repositories.patients().find(this.username);
+            if (stored == null) {
+                return null;
+            }
+            byte[] salt = stored.getSalt();
+            byte[] hash = stored.getHash();
+            // check if the password matches
+            if (!PasswordHasher.verify(password, salt, hash)) {
                 return null;
-            } catch (SQLException e) {
-                throw new SQLException();
-            } finally {
-                cm.closeConnection();
             }
+            this.salt = salt;
+            this.hash = hash;
+            CredentialCache.getInstance().put(CREDENTIAL_ROLE, username, password, salt, hash);
+            return new Patient(this);
         }
     }
 }
@@ -0,0 +1,51 @@
+package scheduler.model;
+
+import java.sql.Date;
+
+public class Reservation {
+
+    public enum Status {
+        RESERVED,
+        NO_CAREGIVER,
+        NO_DOSES,
+        HOLD_EXPIRED
+    }
+
+    private final Status status;
+    private final int appointmentID;
+    private final Date date;
+    private final String caregiverUsername;
+    private final String vaccineName;
+
+    public Reservation(Status status, int appointmentID, Date date, String caregiverUsername, String vaccineName) {
+        this.status = status;
+        this.appointmentID = appointmentID;
+        this.date = date;
+        this.caregiverUsername = caregiverUsername;
+        this.vaccineName = vaccineName;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isReserved() {
+        return status == Status.RESERVED;
+    }
+
+    public int getAppointmentID() {
+        return appointmentID;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public String getCaregiverUsername() {
+        return caregiverUsername;
+    }
+
+    public String getVaccineName() {
+        return vaccineName;
+    }
+}
@@ -1,13 +1,31 @@
 package scheduler.model;
 
-import scheduler.db.ConnectionManager;
+import scheduler.repository.Repositories;
+import scheduler.util.Config;
+import scheduler.util.TimerWheel;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Vaccine {
+    private static final long HOLD_TTL_MILLIS = Config.getLong("DoseHoldTtlSeconds", 300) * 1000;
+
+    // expiry work (a database round trip) runs off the wheel thread
+    private static final ExecutorService holdReleaser = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "dose-hold-releaser");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final TimerWheel holdTimer = new TimerWheel("dose-hold-timer", 100, TimeUnit.MILLISECONDS,
+            512, holdReleaser);
+    private static final ConcurrentHashMap<Integer, TimerWheel.Timeout> pendingHolds = new ConcurrentHashMap<>();
+    private static final AtomicBoolean expiredHoldsSwept = new AtomicBoolean(false);
+
     private final String vaccineName;
     private int availableDoses;
 
@@ -16,11 +34,6 @@ public class Vaccine {
         this.availableDoses = builder.availableDoses;
     }
 
-    private Vaccine(VaccineGetter getter) {
-        this.vaccineName = getter.vaccineName;
-        this.availableDoses = getter.availableDoses;
-    }
-
     // Getters
     public String getVaccineName() {
         return vaccineName;
@@ -31,20 +44,7 @@ public class Vaccine {
     }
 
     public void saveToDB() throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String addDoses = "INSERT INTO vaccines VALUES (?, ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addDoses);
-            statement.setString(1, this.vaccineName);
-            statement.setInt(2, this.availableDoses);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
-        }
+        Repositories.vaccines().save(this);
     }
 
     // Increment the available doses
@@ -52,43 +52,113 @@ public class Vaccine {
         if (num <= 0) {
             throw new IllegalArgumentException("Argument cannot be negative!");
         }
-        this.availableDoses += num;
-
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String removeAvailability  = "UPDATE vaccines SET Doses = ? WHERE name = ?;";
-        try {
-            PreparedStatement statement = con.prepareStatement(removeAvailability);
-            statement.setInt(1, this.availableDoses);
-            statement.setString(2, this.vaccineName);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
-        }
+        this.availableDoses = adjustDoses(num);
     }
 
     // Decrement the available doses
     public void decreaseAvailableDoses(int num) throws SQLException {
-        if (this.availableDoses - num < 0) {
+        if (num <= 0) {
+            throw new IllegalArgumentException("Argument cannot be negative!");
+        }
+        this.availableDoses = adjustDoses(-num);
+    }
+
+    // Applies the change relative to the stored count rather than writing back this object's copy,
+    // so concurrent updates can't overwrite each other, and never lets the count go negative.
+    private int adjustDoses(int delta) throws SQLException {
+        int doses = Repositories.vaccines().adjustDoses(this.vaccineName, delta);
+        if (doses < 0) {
             throw new IllegalArgumentException("Not enough available doses!");
         }
-        this.availableDoses -= num;
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
+        return doses;
+    }
+
+    // Doses left of every vaccine, ordered by name.
+    public static SortedMap<String, Integer> getAllAvailableDoses() throws SQLException {
+        return Repositories.vaccines().findAllDoses();
+    }
+
+    // Takes one dose out of the inventory for the patient until the hold is confirmed into an
+    // appointment (see ReservationService) or expires. The Vaccines row is only touched by the
+    // short hold transaction itself; expiry is driven by the hold timer wheel, which puts the dose
+    // back if nobody confirmed it in time.
+    public DoseHold placeHold(String patientUsername) throws SQLException {
+        return placeHold(patientUsername, HOLD_TTL_MILLIS);
+    }
 
-        String removeAvailability  = "UPDATE vaccines SET Doses = ? WHERE name = ?;";
+    public DoseHold placeHold(String patientUsername, long ttlMillis) throws SQLException {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("Hold duration must be positive!");
+        }
+        // holds left behind by a process that exited early are returned before this process adds its
+        // own, and from then on by the periodic sweep
+        if (expiredHoldsSwept.compareAndSet(false, true)) {
+            releaseExpiredHolds();
+            scheduleSweep(HOLD_TTL_MILLIS);
+        }
+        int holdID = Repositories.vaccines().nextHoldId();
+        boolean held = Repositories.vaccines().placeHold(holdID, this.vaccineName, patientUsername, ttlMillis);
+        if (!held) {
+            return null;
+        }
+        this.availableDoses--;
+        DoseHold hold = new DoseHold(holdID, this.vaccineName, patientUsername, System.currentTimeMillis() + ttlMillis);
+        pendingHolds.put(holdID, holdTimer.schedule(() -> expireHold(holdID), ttlMillis, TimeUnit.MILLISECONDS));
+        return hold;
+    }
+
+    // Called once a hold has been turned into an appointment; the dose is no longer ours to return.
+    public static void holdConfirmed(int holdID) {
+        TimerWheel.Timeout timeout = pendingHolds.remove(holdID);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    // Deletes the hold and returns its dose to the inventory, if the hold still exists.
+    public static boolean releaseHold(int holdID) throws SQLException {
+        holdConfirmed(holdID);
+        return Repositories.vaccines().releaseHold(holdID);
+    }
+
+    // Returns doses held by holds that are past their expiry, e.g. ones left behind by a process
+    // that exited before its timer fired. Runs before the first hold a process places and then once
+    // every hold TTL, so with several processes sharing the database a crashed one's holds come back
+    // without waiting for a restart.
+    public static int releaseExpiredHolds() throws SQLException {
+        return Repositories.vaccines().releaseExpiredHolds();
+    }
+
+    // Starts the periodic sweep now rather than at the first hold, for processes that run for long.
+    public static void startExpiredHoldSweep() {
+        if (expiredHoldsSwept.compareAndSet(false, true)) {
+            scheduleSweep(0);
+        }
+    }
+
+    private static void scheduleSweep(long delayMillis) {
+        holdTimer.schedule(Vaccine::sweepExpiredHolds, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static void sweepExpiredHolds() {
         try {
-            PreparedStatement statement = con.prepareStatement(removeAvailability);
-            statement.setInt(1, this.availableDoses);
-            statement.setString(2, this.vaccineName);
-            statement.executeUpdate();
+            releaseExpiredHolds();
         } catch (SQLException e) {
-            throw new SQLException();
+            System.out.println("Error occurred when releasing expired holds");
+            e.printStackTrace();
         } finally {
-            cm.closeConnection();
+            scheduleSweep(HOLD_TTL_MILLIS);
+        }
+    }
+
+    private static void expireHold(int holdID) {
+        pendingHolds.remove(holdID);
+        try {
+            releaseHold(holdID);
+        } catch (SQLException e) {
+            // the periodic sweep will pick it up
+            System.out.println("Error occurred when releasing expired hold " + holdID);
+            e.printStackTrace();
         }
     }
 
@@ -100,6 +170,36 @@ public class Vaccine {
                 '}';
     }
 
+    public static class DoseHold {
+        private final int holdID;
+        private final String vaccineName;
+        private final String patientUsername;
+        private final long expiresAt;
+
+        private DoseHold(int holdID, String vaccineName, String patientUsername, long expiresAt) {
+            this.holdID = holdID;
+            this.vaccineName = vaccineName;
+            this.patientUsername = patientUsername;
+            this.expiresAt = expiresAt;
+        }
+
+        public int getHoldID() {
+            return holdID;
+        }
+
+        public String getVaccineName() {
+            return vaccineName;
+        }
+
+        public String getPatientUsername() {
+            return patientUsername;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+
     public static class VaccineBuilder {
         private final String vaccineName;
         private int availableDoses;
@@ -116,31 +216,13 @@ public class Vaccine {
 
     public static class VaccineGetter {
         private final String vaccineName;
-        private int availableDoses;
 
         public VaccineGetter(String vaccineName) {
             this.vaccineName = vaccineName;
         }
 
         public Vaccine get() throws SQLException {
-            ConnectionManager cm = new ConnectionManager();
-            Connection con = cm.createConnection();
-
-            String getVaccine = "SELECT Name, Doses FROM Vaccines WHERE Name = ?";
-            try {
-                PreparedStatement statement = con.prepareStatement(getVaccine);
-                statement.setString(1, this.vaccineName);
-                ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    this.availableDoses = resultSet.getInt("Doses");
-                    return new Vaccine(this);
-                }
-                return null;
-            } catch (SQLException e) {
-                throw new SQLException();
-            } finally {
-                cm.closeConnection();
-            }
+            return Repositories.vaccines().find(this.vaccineName);
         }
     }
 }
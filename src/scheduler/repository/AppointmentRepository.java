@@ -0,0 +1,47 @@
+package scheduler.repository;
+
+import scheduler.model.Appointment;
+import scheduler.model.Reservation;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+
+public interface AppointmentRepository {
+
+    int nextId() throws SQLException;
+
+    void save(Appointment appointment) throws SQLException;
+
+    // Atomically picks the first caregiver (by username) with a slot left on the date, takes a dose
+    // (or consumes the hold, if holdID is not null) and a slot, and inserts the appointment. Nothing
+    // is changed unless the result is RESERVED.
+    Reservation reserve(Date date, String vaccineName, String patientUsername, int appointmentID, Integer holdID)
+            throws SQLException;
+
+    // Deletes the appointment and gives its dose back in the same transaction. Its slot goes to the
+    // first patient waiting for the date who can get a dose (booked as backfillID, see
+    // WaitlistRepository.bookNext), or back to the caregiver if there is nobody. A backfillID of -1
+    // skips the waitlist and always gives the slot back. Returns the waiting patient's new
+    // appointment, or null.
+    Appointment delete(int appointmentID, int backfillID) throws SQLException;
+
+    Appointment findById(int appointmentID) throws SQLException;
+
+    List<Appointment> findByPatient(String patientUsername) throws SQLException;
+
+    List<Appointment> findByCaregiver(String caregiverUsername) throws SQLException;
+
+    // One page of the user's appointments in (Date, AppointmentID) order, for keyset pagination:
+    // at most limit rows dated between from and to (inclusive, either may be null) that come after
+    // the given appointment, or from the start when after is null, leaving out the first offset of
+    // them. Only after is cheap however deep it goes; offset is for jumping straight to a page.
+    List<Appointment> findPageByPatient(String patientUsername, Date from, Date to, Appointment after, int offset,
+                                        int limit) throws SQLException;
+
+    List<Appointment> findPageByCaregiver(String caregiverUsername, Date from, Date to, Appointment after,
+                                          int offset, int limit) throws SQLException;
+
+    // The highest appointment ID the patient has, or -1 if none.
+    int findLatestIdForPatient(String patientUsername) throws SQLException;
+}
@@ -0,0 +1,30 @@
+package scheduler.repository;
+
+import scheduler.model.Availability;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SortedMap;
+
+public interface AvailabilityRepository {
+
+    // Inserts the availabilities in one transaction, skipping (date, caregiver) pairs that already
+    // exist. Returns the rows actually inserted.
+    List<Availability> saveAll(List<Availability> availabilities, int batchSize) throws SQLException;
+
+    // Caregivers with at least one dose left on the date, ordered by username.
+    SortedMap<String, Integer> findOpenSlots(Date date) throws SQLException;
+
+    // Recomputes DosesLeft from the uploaded capacity and the appointments for every row dated from
+    // start to end, in one transaction. Returns the number of rows that had drifted.
+    int rebuildCapacity(Date start, Date end) throws SQLException;
+
+    // The first and last date with availability, or null if there is none.
+    Date[] findDateBounds() throws SQLException;
+
+    // The same for every date from start to end (inclusive) in one read, ordered by date; dates
+    // without an open slot are left out.
+    SortedMap<LocalDate, SortedMap<String, Integer>> findOpenSlots(Date start, Date end) throws SQLException;
+}
@@ -0,0 +1,24 @@
+package scheduler.repository;
+
+import scheduler.model.Caregiver;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface CaregiverRepository {
+
+    void save(Caregiver caregiver) throws SQLException;
+
+    // All caregivers are written in one transaction, batchSize rows per round trip where that matters.
+    void saveAll(List<Caregiver> caregivers, int batchSize) throws SQLException;
+
+    // The stored salt and hash for the username; the password is not checked here.
+    Caregiver find(String username) throws SQLException;
+
+    boolean exists(String username) throws SQLException;
+
+    // The subset of usernames that already exist.
+    Set<String> findExistingUsernames(Collection<String> usernames) throws SQLException;
+}
@@ -0,0 +1,24 @@
+package scheduler.repository;
+
+import scheduler.model.Patient;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface PatientRepository {
+
+    void save(Patient patient) throws SQLException;
+
+    // All patients are written in one transaction, batchSize rows per round trip where that matters.
+    void saveAll(List<Patient> patients, int batchSize) throws SQLException;
+
+    // The stored salt and hash for the username; the password is not checked here.
+    Patient find(String username) throws SQLException;
+
+    boolean exists(String username) throws SQLException;
+
+    // The subset of usernames that already exist.
+    Set<String> findExistingUsernames(Collection<String> usernames) throws SQLException;
+}
@@ -0,0 +1,73 @@
+package scheduler.repository;
+
+import scheduler.repository.jdbc.JdbcStorage;
+import scheduler.repository.journal.JournaledStorage;
+import scheduler.repository.memory.MemoryStorage;
+import scheduler.util.Config;
+
+import java.util.Locale;
+
+// Holds the storage engine the process runs against, chosen by the Storage setting: "jdbc" (the
+// default) for SQL Server through ConnectionManager, or "memory" for a process-local store that
+// needs no database, for local runs and load tests. State in the memory engine is lost on exit.
+// "journal" is SQL Server with appointment writes acknowledged from a local write-ahead journal
+// and applied to the database in the background (see JournaledStorage).
+public class Repositories {
+
+    private static volatile Storage storage = null;
+
+    public static Storage get() {
+        Storage s = storage;
+        if (s == null) {
+            synchronized (Repositories.class) {
+                if (storage == null) {
+                    storage = create(Config.getString("Storage", "jdbc"));
+                }
+                s = storage;
+            }
+        }
+        return s;
+    }
+
+    // Replaces the engine, e.g. so a tool can run against a fresh memory store.
+    public static synchronized void use(Storage s) {
+        storage = s;
+    }
+
+    public static Storage create(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "jdbc":
+                return new JdbcStorage();
+            case "memory":
+                return new MemoryStorage();
+            case "journal":
+                return JournaledStorage.open();
+            default:
+                throw new IllegalArgumentException("Unknown storage: " + name);
+        }
+    }
+
+    public static PatientRepository patients() {
+        return get().patients();
+    }
+
+    public static CaregiverRepository caregivers() {
+        return get().caregivers();
+    }
+
+    public static AvailabilityRepository availabilities() {
+        return get().availabilities();
+    }
+
+    public static VaccineRepository vaccines() {
+        return get().vaccines();
+    }
+
+    public static AppointmentRepository appointments() {
+        return get().appointments();
+    }
+
+    public static WaitlistRepository waitlist() {
+        return get().waitlist();
+    }
+}
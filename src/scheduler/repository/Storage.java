@@ -0,0 +1,19 @@
+package scheduler.repository;
+
+// One storage engine: the set of repositories the model reads and writes through.
+public interface Storage {
+
+    String getName();
+
+    PatientRepository patients();
+
+    CaregiverRepository caregivers();
+
+    AvailabilityRepository availabilities();
+
+    VaccineRepository vaccines();
+
+    AppointmentRepository appointments();
+
+    WaitlistRepository waitlist();
+}
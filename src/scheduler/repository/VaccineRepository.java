@@ -0,0 +1,31 @@
+package scheduler.repository;
+
+import scheduler.model.Vaccine;
+
+import java.sql.SQLException;
+import java.util.SortedMap;
+
+public interface VaccineRepository {
+
+    void save(Vaccine vaccine) throws SQLException;
+
+    Vaccine find(String vaccineName) throws SQLException;
+
+    // Doses left of every vaccine, ordered by name.
+    SortedMap<String, Integer> findAllDoses() throws SQLException;
+
+    // Adds delta to the stored count and returns the new count, or -1 if the vaccine does not exist
+    // or the count would go negative.
+    int adjustDoses(String vaccineName, int delta) throws SQLException;
+
+    int nextHoldId() throws SQLException;
+
+    // Takes one dose out of the inventory under the hold; false if no dose is left.
+    boolean placeHold(int holdID, String vaccineName, String patientUsername, long ttlMillis) throws SQLException;
+
+    // Deletes the hold and returns its dose; false if the hold no longer exists.
+    boolean releaseHold(int holdID) throws SQLException;
+
+    // Releases every hold past its expiry and returns how many there were.
+    int releaseExpiredHolds() throws SQLException;
+}
@@ -0,0 +1,25 @@
+package scheduler.repository;
+
+import scheduler.model.Appointment;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+
+public interface WaitlistRepository {
+
+    // Adds the patient to the end of the date's queue and returns their position in it, or -1 if
+    // they are already waiting for that date.
+    int join(Date date, String vaccineName, String patientUsername) throws SQLException;
+
+    // In one transaction, takes the first patient in the date's queue whose vaccine has a dose left,
+    // books them into an open slot on the date as appointmentID and removes them from the queue.
+    // Returns the new appointment, or null if nobody could be booked.
+    Appointment bookNext(Date date, int appointmentID) throws SQLException;
+
+    // Dates that have patients waiting, earliest first.
+    List<Date> findWaitingDates() throws SQLException;
+
+    // Whether anyone is waiting for the date.
+    boolean isWaiting(Date date) throws SQLException;
+}
@@ -0,0 +1,365 @@
+package scheduler.repository.jdbc;
+
+import scheduler.db.ConnectionManager;
+import scheduler.db.IdAllocator;
+import scheduler.model.Appointment;
+import scheduler.model.Reservation;
+import scheduler.repository.AppointmentRepository;
+import scheduler.util.Config;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+class JdbcAppointmentRepository implements AppointmentRepository {
+
+    // rows the driver fetches per round trip when reading a page of appointments
+    private static final int FETCH_SIZE = Config.getInt("AppointmentFetchSize", 100);
+
+    // One batch, one round trip: pick the first caregiver (by username) with capacity left on the
+    // date, take a dose from the vaccine and a slot from the caregiver, insert the appointment and
+    // report the outcome as a single row. UPDLOCK + READPAST lets concurrent reservations skip a
+    // caregiver another transaction is booking instead of queueing behind it; since a caregiver can
+    // have several slots on a date, a skipped row may still have one left, so when the skipping read
+    // finds nothing a blocking read waits for the locked rows before answering NO_CAREGIVER. Rows
+    // written before DosesLeft was maintained have a NULL there and count as a single slot. With a
+    // hold, the dose was already taken out of Vaccines when the hold was placed, so the hold row is
+    // consumed instead.
+    private static final String RESERVE =
+            "DECLARE @date DATE = ?, @vaccine VARCHAR(255) = ?, @patient VARCHAR(255) = ?, @id INT = ?, @hold INT = ?; " +
+            "DECLARE @caregiver VARCHAR(255), @status VARCHAR(20) = 'RESERVED', @rows INT; " +
+            "BEGIN TRY " +
+            "    BEGIN TRANSACTION; " +
+            "    SELECT TOP (1) @caregiver = Username FROM Availabilities WITH (UPDLOCK, ROWLOCK, READPAST) " +
+            "        WHERE Time = @date AND ISNULL(DosesLeft, 1) > 0 ORDER BY Username; " +
+            "    IF @caregiver IS NULL " +
+            "        SELECT TOP (1) @caregiver = Username FROM Availabilities WITH (UPDLOCK, ROWLOCK) " +
+            "            WHERE Time = @date AND ISNULL(DosesLeft, 1) > 0 ORDER BY Username; " +
+            "    IF @caregiver IS NULL " +
+            "        SET @status = 'NO_CAREGIVER'; " +
+            "    ELSE " +
+            "    BEGIN " +
+            "        IF @hold IS NULL " +
+            "        BEGIN " +
+            "            UPDATE Vaccines SET Doses = Doses - 1 WHERE Name = @vaccine AND Doses > 0; " +
+            "            SET @rows = @@ROWCOUNT; " +
+            "        END " +
+            "        ELSE " +
+            "        BEGIN " +
+            "            DELETE FROM DoseHolds WHERE HoldID = @hold AND VaccineName = @vaccine " +
+            "                AND PatientUsername = @patient AND ExpiresAt > SYSUTCDATETIME(); " +
+            "            SET @rows = @@ROWCOUNT; " +
+            "        END " +
+            "        IF @rows = 0 " +
+            "            SET @status = CASE WHEN @hold IS NULL THEN 'NO_DOSES' ELSE 'HOLD_EXPIRED' END; " +
+            "        ELSE " +
+            "        BEGIN " +
+            "            UPDATE Availabilities SET DosesLeft = ISNULL(DosesLeft, 1) - 1 " +
+            "                WHERE Time = @date AND Username = @caregiver; " +
+            "            INSERT INTO Appointments (AppointmentID, Date, CaregiverUsername, PatientUsername, VaccineName) " +
+            "                VALUES (@id, @date, @caregiver, @patient, @vaccine); " +
+            "        END " +
+            "    END " +
+            "    IF @status = 'RESERVED' COMMIT TRANSACTION; ELSE ROLLBACK TRANSACTION; " +
+            "END TRY " +
+            "BEGIN CATCH " +
+            "    IF @@TRANCOUNT > 0 ROLLBACK TRANSACTION; " +
+            "    THROW; " +
+            "END CATCH; " +
+            "SELECT @status AS Status, " +
+            "       CASE WHEN @status = 'RESERVED' THEN @id END AS AppointmentID, " +
+            "       CASE WHEN @status = 'RESERVED' THEN @caregiver END AS CaregiverUsername;";
+
+    // Books the head of the date's waitlist into an open slot; expects @date, @id and @preferred (the
+    // caregiver whose slot to use first, if it is open) to be declared, and runs inside the caller's
+    // transaction. Only waiting patients whose vaccine has a dose are considered; the vaccine rows
+    // stay locked so the dose can't go elsewhere before it is taken. As in RESERVE, a slot row
+    // another transaction has locked may still have room, so the skipping read is followed by a
+    // blocking one when it finds nothing. Ends with the result row.
+    static final String BOOK_FROM_WAITLIST =
+            "DECLARE @slot VARCHAR(255), @entry INT, @waiting VARCHAR(255), @waitingVaccine VARCHAR(255); " +
+            "SELECT TOP (1) @slot = Username FROM Availabilities WITH (UPDLOCK, ROWLOCK, READPAST) " +
+            "    WHERE Time = @date AND ISNULL(DosesLeft, 1) > 0 " +
+            "    ORDER BY CASE WHEN Username = @preferred THEN 0 ELSE 1 END, Username; " +
+            "IF @slot IS NULL " +
+            "    SELECT TOP (1) @slot = Username FROM Availabilities WITH (UPDLOCK, ROWLOCK) " +
+            "        WHERE Time = @date AND ISNULL(DosesLeft, 1) > 0 " +
+            "        ORDER BY CASE WHEN Username = @preferred THEN 0 ELSE 1 END, Username; " +
+            "IF @slot IS NOT NULL " +
+            "    SELECT TOP (1) @entry = w.EntryID, @waiting = w.PatientUsername, @waitingVaccine = w.VaccineName " +
+            "        FROM Waitlist w WITH (UPDLOCK, ROWLOCK, READPAST) " +
+            "        JOIN Vaccines v WITH (UPDLOCK, ROWLOCK) ON v.Name = w.VaccineName " +
+            "        WHERE w.Date = @date AND v.Doses > 0 ORDER BY w.EntryID; " +
+            "IF @entry IS NOT NULL " +
+            "BEGIN " +
+            "    DELETE FROM Waitlist WHERE EntryID = @entry; " +
+            "    UPDATE Vaccines SET Doses = Doses - 1 WHERE Name = @waitingVaccine; " +
+            "    UPDATE Availabilities SET DosesLeft = ISNULL(DosesLeft, 1) - 1 " +
+            "        WHERE Time = @date AND Username = @slot; " +
+            "    INSERT INTO Appointments (AppointmentID, Date, CaregiverUsername, PatientUsername, VaccineName) " +
+            "        VALUES (@id, @date, @slot, @waiting, @waitingVaccine); " +
+            "END ";
+
+    static final String BOOKED_ROW =
+            "SELECT CASE WHEN @entry IS NOT NULL THEN @id END AS AppointmentID, @date AS Date, " +
+            "       @slot AS CaregiverUsername, @waiting AS PatientUsername, @waitingVaccine AS VaccineName;";
+
+    @Override
+    public int nextId() throws SQLException {
+        // IDs come from a block reserved in IdBlocks, so this is usually served from memory
+        try {
+            return IdAllocator.forAppointments().nextId();
+        } catch (SQLException e) {
+            throw new SQLException("Failed to generate a unique appointment ID.");
+        }
+    }
+
+    @Override
+    public void save(Appointment appointment) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String addAppointment = "INSERT INTO Appointments VALUES (?, ?, ?, ?, ?)";
+        try {
+            PreparedStatement statement = con.prepareStatement(addAppointment);
+            statement.setInt(1, appointment.getAppointmentID());
+            statement.setDate(2, appointment.getDate());
+            statement.setString(3, appointment.getCaregiverUsername());
+            statement.setString(4, appointment.getPatientUsername());
+            statement.setString(5, appointment.getVaccineName());
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new SQLException("Failed to save appointment to the database.");
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Reservation reserve(Date date, String vaccineName, String patientUsername, int appointmentID,
+                               Integer holdID) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            PreparedStatement statement = con.prepareStatement(RESERVE);
+            statement.setDate(1, date);
+            statement.setString(2, vaccineName);
+            statement.setString(3, patientUsername);
+            statement.setInt(4, appointmentID);
+            if (holdID == null) {
+                statement.setNull(5, Types.INTEGER);
+            } else {
+                statement.setInt(5, holdID);
+            }
+            ResultSet resultSet = Statements.firstResultSet(statement);
+            if (resultSet == null || !resultSet.next()) {
+                throw new SQLException("Reservation returned no result.");
+            }
+            Reservation.Status status = Reservation.Status.valueOf(resultSet.getString("Status"));
+            if (status != Reservation.Status.RESERVED) {
+                return new Reservation(status, -1, date, null, vaccineName);
+            }
+            return new Reservation(status, resultSet.getInt("AppointmentID"), date,
+                    resultSet.getString("CaregiverUsername"), vaccineName);
+        } catch (SQLException e) {
+            throw new SQLException("Failed to reserve an appointment.", e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Appointment delete(int appointmentID, int backfillID) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        // delete the appointment, give its dose back and its slot to the caregiver, then let the
+        // waitlist take that same slot, all in the same transaction. The caregiver's Availabilities
+        // row is locked before the appointment is deleted, the order reserve and the capacity
+        // rebuild take their locks in, so a cancel can't deadlock with them. Without a backfill ID
+        // (@id = -1) @date stays null and the waitlist step books nobody.
+        String deleteAppointment = "DECLARE @cancelled INT = ?, @id INT = ?; " +
+                "DECLARE @deleted TABLE (Date DATE, CaregiverUsername VARCHAR(255), VaccineName VARCHAR(255)); " +
+                "DECLARE @date DATE, @preferred VARCHAR(255), @slotDate DATE, @slotCaregiver VARCHAR(255), @locked INT; " +
+                "BEGIN TRY " +
+                "    BEGIN TRANSACTION; " +
+                "    SELECT @slotDate = Date, @slotCaregiver = CaregiverUsername FROM Appointments " +
+                "        WHERE AppointmentID = @cancelled; " +
+                "    SELECT @locked = COUNT(*) FROM Availabilities WITH (UPDLOCK, ROWLOCK) " +
+                "        WHERE Time = @slotDate AND Username = @slotCaregiver; " +
+                "    DELETE FROM Appointments " +
+                "        OUTPUT deleted.Date, deleted.CaregiverUsername, deleted.VaccineName INTO @deleted " +
+                "        WHERE AppointmentID = @cancelled; " +
+                "    UPDATE a SET DosesLeft = ISNULL(a.DosesLeft, 0) + 1 FROM Availabilities a " +
+                "        JOIN @deleted d ON a.Time = d.Date AND a.Username = d.CaregiverUsername; " +
+                "    UPDATE v SET Doses = v.Doses + 1 FROM Vaccines v JOIN @deleted d ON v.Name = d.VaccineName; " +
+                "    IF @id > 0 SELECT @date = Date, @preferred = CaregiverUsername FROM @deleted; " +
+                BOOK_FROM_WAITLIST +
+                "    COMMIT TRANSACTION; " +
+                "END TRY " +
+                "BEGIN CATCH " +
+                "    IF @@TRANCOUNT > 0 ROLLBACK TRANSACTION; " +
+                "    THROW; " +
+                "END CATCH; " +
+                BOOKED_ROW;
+        try {
+            PreparedStatement statement = con.prepareStatement(deleteAppointment);
+            statement.setInt(1, appointmentID);
+            statement.setInt(2, backfillID);
+            return Statements.bookedAppointment(Statements.firstResultSet(statement));
+        } catch (SQLException e) {
+            throw new SQLException("Failed to cancel appointment from the database.", e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Appointment findById(int appointmentID) throws SQLException {
+        // read on the primary: the appointment is looked up to be cancelled
+        List<Appointment> appointments = query("SELECT * FROM Appointments WHERE AppointmentID = ?",
+                appointmentID, false);
+        return appointments.isEmpty() ? null : appointments.get(0);
+    }
+
+    @Override
+    public List<Appointment> findByPatient(String patientUsername) throws SQLException {
+        return query("SELECT * FROM Appointments WHERE PatientUsername = ?", patientUsername, true);
+    }
+
+    @Override
+    public List<Appointment> findByCaregiver(String caregiverUsername) throws SQLException {
+        return query("SELECT * FROM Appointments WHERE CaregiverUsername = ?", caregiverUsername, true);
+    }
+
+    @Override
+    public List<Appointment> findPageByPatient(String patientUsername, Date from, Date to, Appointment after,
+                                               int offset, int limit) throws SQLException {
+        return queryPage("PatientUsername", patientUsername, from, to, after, offset, limit);
+    }
+
+    @Override
+    public List<Appointment> findPageByCaregiver(String caregiverUsername, Date from, Date to, Appointment after,
+                                                 int offset, int limit) throws SQLException {
+        return queryPage("CaregiverUsername", caregiverUsername, from, to, after, offset, limit);
+    }
+
+    @Override
+    public int findLatestIdForPatient(String patientUsername) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String selectLatestAppointmentID = "SELECT MAX(AppointmentID) FROM Appointments WHERE PatientUsername = ?";
+        try {
+            PreparedStatement statement = con.prepareStatement(selectLatestAppointmentID);
+            statement.setString(1, patientUsername);
+            ResultSet resultSet = statement.executeQuery();
+            if (resultSet.next()) {
+                int id = resultSet.getInt(1);
+                return resultSet.wasNull() ? -1 : id;
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Failed to retrieve the latest appointment ID.");
+        } finally {
+            cm.closeConnection();
+        }
+        return -1;
+    }
+
+    // Seeks past the last row of the previous page instead of using OFFSET, so every page costs the
+    // same however deep into the history it is; the (user, Date) indexes serve the order directly.
+    // An offset (show_appointments --page) is skipped on the server, so the skipped rows are read
+    // from the index but don't cross the wire.
+    private static List<Appointment> queryPage(String userColumn, String username, Date from, Date to,
+                                               Appointment after, int offset, int limit) throws SQLException {
+        List<Appointment> appointments = new ArrayList<>();
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createReadConnection();
+
+        StringBuilder sqlQuery = new StringBuilder(offset > 0 ? "SELECT " : "SELECT TOP (?) ");
+        sqlQuery.append("AppointmentID, Date, CaregiverUsername, PatientUsername, VaccineName " +
+                "FROM Appointments WHERE ").append(userColumn).append(" = ?");
+        if (from != null) {
+            sqlQuery.append(" AND Date >= ?");
+        }
+        if (to != null) {
+            sqlQuery.append(" AND Date <= ?");
+        }
+        if (after != null) {
+            sqlQuery.append(" AND (Date > ? OR (Date = ? AND AppointmentID > ?))");
+        }
+        sqlQuery.append(" ORDER BY Date, AppointmentID");
+        if (offset > 0) {
+            sqlQuery.append(" OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+        }
+        try {
+            PreparedStatement statement = con.prepareStatement(sqlQuery.toString());
+            // rows of a page arrive in one round trip
+            statement.setFetchSize(Math.min(limit, FETCH_SIZE));
+            int index = 1;
+            if (offset == 0) {
+                statement.setInt(index++, limit);
+            }
+            statement.setString(index++, username);
+            if (from != null) {
+                statement.setDate(index++, from);
+            }
+            if (to != null) {
+                statement.setDate(index++, to);
+            }
+            if (after != null) {
+                statement.setDate(index++, after.getDate());
+                statement.setDate(index++, after.getDate());
+                statement.setInt(index++, after.getAppointmentID());
+            }
+            if (offset > 0) {
+                statement.setInt(index++, offset);
+                statement.setInt(index, limit);
+            }
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                appointments.add(new Appointment.AppointmentBuilder(
+                        resultSet.getInt("AppointmentID"),
+                        resultSet.getDate("Date"),
+                        resultSet.getString("CaregiverUsername"),
+                        resultSet.getString("PatientUsername"),
+                        resultSet.getString("VaccineName")).build());
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Failed to retrieve appointments.", e);
+        } finally {
+            cm.closeConnection();
+        }
+        return appointments;
+    }
+
+    private static List<Appointment> query(String sqlQuery, Object parameter, boolean readOnly) throws SQLException {
+        List<Appointment> appointments = new ArrayList<>();
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = readOnly ? cm.createReadConnection() : cm.createConnection();
+
+        try {
+            PreparedStatement statement = con.prepareStatement(sqlQuery);
+            statement.setObject(1, parameter);
+            ResultSet resultSet = statement.executeQuery();
+
+            while (resultSet.next()) {
+                appointments.add(new Appointment.AppointmentBuilder(
+                        resultSet.getInt("AppointmentID"),
+                        resultSet.getDate("Date"),
+                        resultSet.getString("CaregiverUsername"),
+                        resultSet.getString("PatientUsername"),
+                        resultSet.getString("VaccineName")).build());
+            }
+        } finally {
+            cm.closeConnection();
+        }
+        return appointments;
+    }
+}
@@ -0,0 +1,189 @@
+package scheduler.repository.jdbc;
+
+import scheduler.db.ConnectionManager;
+import scheduler.model.Availability;
+import scheduler.repository.AvailabilityRepository;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+class JdbcAvailabilityRepository implements AvailabilityRepository {
+
+    // Inserts the availabilities as JDBC batches of batchSize rows inside a single transaction.
+    @Override
+    public List<Availability> saveAll(List<Availability> availabilities, int batchSize) throws SQLException {
+        List<Availability> inserted = new ArrayList<>();
+        if (availabilities.isEmpty()) {
+            return inserted;
+        }
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String addAvailability = "INSERT INTO Availabilities (Time, Username, DosesLeft, Capacity) " +
+                "SELECT ?, ?, ?, ? WHERE NOT EXISTS " +
+                "(SELECT 1 FROM Availabilities WITH (UPDLOCK, HOLDLOCK) WHERE Time = ? AND Username = ?)";
+        try {
+            con.setAutoCommit(false);
+            PreparedStatement statement = con.prepareStatement(addAvailability);
+            for (int start = 0; start < availabilities.size(); start += batchSize) {
+                List<Availability> chunk = availabilities.subList(start, Math.min(start + batchSize, availabilities.size()));
+                for (Availability availability : chunk) {
+                    statement.setDate(1, availability.getDate());
+                    statement.setString(2, availability.getCaregiverUsername());
+                    statement.setInt(3, availability.getDoses());
+                    statement.setInt(4, availability.getDoses());
+                    statement.setDate(5, availability.getDate());
+                    statement.setString(6, availability.getCaregiverUsername());
+                    statement.addBatch();
+                }
+                int[] counts = statement.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    // SUCCESS_NO_INFO means the driver could not report a count, treat it as inserted
+                    if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                        inserted.add(chunk.get(i));
+                    }
+                }
+            }
+            con.commit();
+            return inserted;
+        } catch (SQLException e) {
+            try {
+                con.rollback();
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+            throw new SQLException("Failed to upload availability.", e);
+        } finally {
+            try {
+                con.setAutoCommit(true);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public SortedMap<String, Integer> findOpenSlots(Date date) throws SQLException {
+        TreeMap<String, Integer> result = new TreeMap<>();
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createReadConnection();
+
+        // DosesLeft is decremented by reserve and restored by cancel, NULL means one free slot
+        String sqlQuery = "SELECT Username, ISNULL(DosesLeft, 1) AS DosesLeft " +
+                "FROM Availabilities " +
+                "WHERE Time = ? AND ISNULL(DosesLeft, 1) > 0 " +
+                "ORDER BY Username;";
+        try {
+            PreparedStatement statement = con.prepareStatement(sqlQuery);
+            statement.setDate(1, date);
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                result.put(resultSet.getString("Username"), resultSet.getInt("DosesLeft"));
+            }
+        } finally {
+            cm.closeConnection();
+        }
+        return result;
+    }
+
+    @Override
+    public SortedMap<LocalDate, SortedMap<String, Integer>> findOpenSlots(Date start, Date end) throws SQLException {
+        TreeMap<LocalDate, SortedMap<String, Integer>> result = new TreeMap<>();
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createReadConnection();
+
+        // a range seek on the (Time, Username) primary key, already in the order the result is built
+        String sqlQuery = "SELECT Time, Username, ISNULL(DosesLeft, 1) AS DosesLeft " +
+                "FROM Availabilities " +
+                "WHERE Time BETWEEN ? AND ? AND ISNULL(DosesLeft, 1) > 0 " +
+                "ORDER BY Time, Username;";
+        try {
+            PreparedStatement statement = con.prepareStatement(sqlQuery);
+            statement.setDate(1, start);
+            statement.setDate(2, end);
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                result.computeIfAbsent(resultSet.getDate("Time").toLocalDate(), d -> new TreeMap<>())
+                        .put(resultSet.getString("Username"), resultSet.getInt("DosesLeft"));
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Failed to search caregiver schedules.", e);
+        } finally {
+            cm.closeConnection();
+        }
+        return result;
+    }
+
+    // Locks the range's rows before counting, so no reserve or cancel on them can be in flight: both
+    // lock the Availabilities row before they change Appointments, in the same transaction, so they
+    // wait for the rebuild (or it for them) in the same order and don't deadlock with it.
+    @Override
+    public int rebuildCapacity(Date start, Date end) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String lockRange = "SELECT COUNT(*) FROM Availabilities WITH (UPDLOCK, HOLDLOCK) WHERE Time BETWEEN ? AND ?";
+        String rebuild = "UPDATE a SET DosesLeft = CASE WHEN b.Booked > a.Capacity THEN 0 " +
+                "ELSE a.Capacity - b.Booked END " +
+                "FROM Availabilities a " +
+                "CROSS APPLY (SELECT COUNT(*) AS Booked FROM Appointments p " +
+                "             WHERE p.CaregiverUsername = a.Username AND p.Date = a.Time) b " +
+                "WHERE a.Time BETWEEN ? AND ? " +
+                "AND a.DosesLeft <> CASE WHEN b.Booked > a.Capacity THEN 0 ELSE a.Capacity - b.Booked END";
+        try {
+            con.setAutoCommit(false);
+            PreparedStatement lock = con.prepareStatement(lockRange);
+            lock.setDate(1, start);
+            lock.setDate(2, end);
+            lock.executeQuery().close();
+            PreparedStatement statement = con.prepareStatement(rebuild);
+            statement.setDate(1, start);
+            statement.setDate(2, end);
+            int corrected = statement.executeUpdate();
+            con.commit();
+            return corrected;
+        } catch (SQLException e) {
+            try {
+                con.rollback();
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+            throw new SQLException("Failed to rebuild capacity from " + start + " to " + end + ".", e);
+        } finally {
+            try {
+                con.setAutoCommit(true);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Date[] findDateBounds() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            ResultSet resultSet = con.prepareStatement("SELECT MIN(Time), MAX(Time) FROM Availabilities").executeQuery();
+            if (resultSet.next() && resultSet.getDate(1) != null) {
+                return new Date[]{resultSet.getDate(1), resultSet.getDate(2)};
+            }
+            return null;
+        } catch (SQLException e) {
+            throw new SQLException("Failed to read the availability dates.", e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package scheduler.repository.jdbc;
+
+import scheduler.db.ConnectionManager;
+import scheduler.model.Patient;
+import scheduler.repository.PatientRepository;
+import scheduler.util.Util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+class JdbcPatientRepository implements PatientRepository {
+    // SQL Server accepts at most 2100 parameters per statement
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    @Override
+    public void save(Patient patient) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String addPatient = "INSERT INTO Patients VALUES (? , ?, ?)";
+        try {
+            PreparedStatement statement = con.prepareStatement(addPatient);
+            statement.setString(1, patient.getUsername());
+            statement.setBytes(2, patient.getSalt());
+            statement.setBytes(3, patient.getHash());
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Inserts all patients as JDBC batches of batchSize rows inside a single transaction.
+    @Override
+    public void saveAll(List<Patient> patients, int batchSize) throws SQLException {
+        if (patients.isEmpty()) {
+            return;
+        }
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String addPatient = "INSERT INTO Patients VALUES (? , ?, ?)";
+        try {
+            con.setAutoCommit(false);
+            PreparedStatement statement = con.prepareStatement(addPatient);
+            int pending = 0;
+            for (Patient patient : patients) {
+                statement.setString(1, patient.getUsername());
+                statement.setBytes(2, patient.getSalt());
+                statement.setBytes(3, patient.getHash());
+                statement.addBatch();
+                if (++pending == batchSize) {
+                    statement.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                statement.executeBatch();
+            }
+            con.commit();
+        } catch (SQLException e) {
+            try {
+                con.rollback();
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+            throw new SQLException("Failed to save patients to the database.", e);
+        } finally {
+            try {
+                con.setAutoCommit(true);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Patient find(String username) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String getPatient = "SELECT Salt, Hash FROM Patients WHERE Username = ?";
+        try {
+            PreparedStatement statement = con.prepareStatement(getPatient);
+            statement.setString(1, username);
+            ResultSet resultSet = statement.executeQuery();
+            if (resultSet.next()) {
+                byte[] salt = resultSet.getBytes("Salt");
+                // we need to call Util.trim() to get rid of the paddings,
+                // try to remove the use of Util.trim() and you'll see :)
+                byte[] hash = Util.trim(resultSet.getBytes("Hash"));
+                return new Patient.PatientBuilder(username, salt, hash).build();
+            }
+            return null;
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public boolean exists(String username) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String selectUsername = "SELECT * FROM Patients WHERE Username = ?";
+        try {
+            PreparedStatement statement = con.prepareStatement(selectUsername);
+            statement.setString(1, username);
+            ResultSet resultSet = statement.executeQuery();
+            // returns false if the cursor is not before the first record or if there are no rows in the ResultSet.
+            return resultSet.isBeforeFirst();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // One IN (...) query per chunk of usernames instead of one lookup per name.
+    @Override
+    public Set<String> findExistingUsernames(Collection<String> usernames) throws SQLException {
+        Set<String> existing = new HashSet<>();
+        List<String> all = new ArrayList<>(usernames);
+        if (all.isEmpty()) {
+            return existing;
+        }
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            for (int start = 0; start < all.size(); start += LOOKUP_CHUNK_SIZE) {
+                List<String> chunk = all.subList(start, Math.min(start + LOOKUP_CHUNK_SIZE, all.size()));
+                String selectUsernames = "SELECT Username FROM Patients WHERE Username IN (" +
+                        String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+                PreparedStatement statement = con.prepareStatement(selectUsernames);
+                for (int i = 0; i < chunk.size(); i++) {
+                    statement.setString(i + 1, chunk.get(i));
+                }
+                ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    existing.add(resultSet.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Failed to look up existing patients.", e);
+        } finally {
+            cm.closeConnection();
+        }
+        return existing;
+    }
+}
@@ -0,0 +1,55 @@
+package scheduler.repository.jdbc;
+
+import scheduler.repository.AppointmentRepository;
+import scheduler.repository.AvailabilityRepository;
+import scheduler.repository.CaregiverRepository;
+import scheduler.repository.PatientRepository;
+import scheduler.repository.Storage;
+import scheduler.repository.VaccineRepository;
+import scheduler.repository.WaitlistRepository;
+
+// SQL Server through the ConnectionManager pool.
+public class JdbcStorage implements Storage {
+
+    private final PatientRepository patients = new JdbcPatientRepository();
+    private final CaregiverRepository caregivers = new JdbcCaregiverRepository();
+    private final AvailabilityRepository availabilities = new JdbcAvailabilityRepository();
+    private final VaccineRepository vaccines = new JdbcVaccineRepository();
+    private final AppointmentRepository appointments = new JdbcAppointmentRepository();
+    private final WaitlistRepository waitlist = new JdbcWaitlistRepository();
+
+    @Override
+    public String getName() {
+        return "jdbc";
+    }
+
+    @Override
+    public PatientRepository patients() {
+        return patients;
+    }
+
+    @Override
+    public CaregiverRepository caregivers() {
+        return caregivers;
+    }
+
+    @Override
+    public AvailabilityRepository availabilities() {
+        return availabilities;
+    }
+
+    @Override
+    public VaccineRepository vaccines() {
+        return vaccines;
+    }
+
+    @Override
+    public AppointmentRepository appointments() {
+        return appointments;
+    }
+
+    @Override
+    public WaitlistRepository waitlist() {
+        return waitlist;
+    }
+}
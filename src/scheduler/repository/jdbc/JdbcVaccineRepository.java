@@ -0,0 +1,195 @@
+package scheduler.repository.jdbc;
+
+import scheduler.db.ConnectionManager;
+import scheduler.db.IdAllocator;
+import scheduler.model.Vaccine;
+import scheduler.repository.VaccineRepository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+class JdbcVaccineRepository implements VaccineRepository {
+
+    // shared by releaseHold and releaseExpiredHolds, which only differ in the WHERE clause
+    private static final String RELEASE_HOLDS = "DECLARE @released TABLE (VaccineName VARCHAR(255)); " +
+            "BEGIN TRY " +
+            "    BEGIN TRANSACTION; " +
+            "    DELETE FROM DoseHolds OUTPUT deleted.VaccineName INTO @released ";
+    private static final String RELEASE_HOLDS_END =
+            "    UPDATE v SET Doses = v.Doses + r.Released FROM Vaccines v " +
+            "        JOIN (SELECT VaccineName, COUNT(*) AS Released FROM @released GROUP BY VaccineName) r " +
+            "        ON v.Name = r.VaccineName; " +
+            "    COMMIT TRANSACTION; " +
+            "END TRY " +
+            "BEGIN CATCH " +
+            "    IF @@TRANCOUNT > 0 ROLLBACK TRANSACTION; " +
+            "    THROW; " +
+            "END CATCH; " +
+            "SELECT COUNT(*) AS Released FROM @released;";
+
+    private final IdAllocator holdIds = new IdAllocator("DoseHolds", "HoldID", 20);
+
+    @Override
+    public void save(Vaccine vaccine) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String addDoses = "INSERT INTO vaccines VALUES (?, ?)";
+        try {
+            PreparedStatement statement = con.prepareStatement(addDoses);
+            statement.setString(1, vaccine.getVaccineName());
+            statement.setInt(2, vaccine.getAvailableDoses());
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Vaccine find(String vaccineName) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String getVaccine = "SELECT Name, Doses FROM Vaccines WHERE Name = ?";
+        try {
+            PreparedStatement statement = con.prepareStatement(getVaccine);
+            statement.setString(1, vaccineName);
+            ResultSet resultSet = statement.executeQuery();
+            if (resultSet.next()) {
+                return new Vaccine.VaccineBuilder(vaccineName, resultSet.getInt("Doses")).build();
+            }
+            return null;
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public SortedMap<String, Integer> findAllDoses() throws SQLException {
+        TreeMap<String, Integer> result = new TreeMap<>();
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createReadConnection();
+
+        String getVaccines = "SELECT Name, Doses FROM Vaccines ORDER BY Name";
+        try {
+            ResultSet resultSet = con.prepareStatement(getVaccines).executeQuery();
+            while (resultSet.next()) {
+                result.put(resultSet.getString("Name"), resultSet.getInt("Doses"));
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Failed to retrieve vaccines.", e);
+        } finally {
+            cm.closeConnection();
+        }
+        return result;
+    }
+
+    // Applies the change relative to the current row rather than writing back a caller's copy,
+    // so concurrent updates can't overwrite each other, and never lets the count go negative.
+    @Override
+    public int adjustDoses(String vaccineName, int delta) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String adjustDoses = "UPDATE Vaccines SET Doses = Doses + ? OUTPUT inserted.Doses " +
+                "WHERE Name = ? AND Doses + ? >= 0;";
+        try {
+            PreparedStatement statement = con.prepareStatement(adjustDoses);
+            statement.setInt(1, delta);
+            statement.setString(2, vaccineName);
+            statement.setInt(3, delta);
+            ResultSet resultSet = statement.executeQuery();
+            return resultSet.next() ? resultSet.getInt(1) : -1;
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public int nextHoldId() throws SQLException {
+        return holdIds.nextId();
+    }
+
+    @Override
+    public boolean placeHold(int holdID, String vaccineName, String patientUsername, long ttlMillis)
+            throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String placeHold = "DECLARE @id INT = ?, @name VARCHAR(255) = ?, @patient VARCHAR(255) = ?, @ttl INT = ?; " +
+                "DECLARE @held BIT = 0; " +
+                "BEGIN TRY " +
+                "    BEGIN TRANSACTION; " +
+                "    UPDATE Vaccines SET Doses = Doses - 1 WHERE Name = @name AND Doses > 0; " +
+                "    IF @@ROWCOUNT = 1 " +
+                "    BEGIN " +
+                "        INSERT INTO DoseHolds (HoldID, VaccineName, PatientUsername, ExpiresAt) " +
+                "            VALUES (@id, @name, @patient, DATEADD(millisecond, @ttl, SYSUTCDATETIME())); " +
+                "        SET @held = 1; " +
+                "    END " +
+                "    COMMIT TRANSACTION; " +
+                "END TRY " +
+                "BEGIN CATCH " +
+                "    IF @@TRANCOUNT > 0 ROLLBACK TRANSACTION; " +
+                "    THROW; " +
+                "END CATCH; " +
+                "SELECT @held AS Held;";
+        try {
+            PreparedStatement statement = con.prepareStatement(placeHold);
+            statement.setInt(1, holdID);
+            statement.setString(2, vaccineName);
+            statement.setString(3, patientUsername);
+            statement.setInt(4, (int) Math.min(ttlMillis, Integer.MAX_VALUE));
+            ResultSet resultSet = Statements.firstResultSet(statement);
+            return resultSet != null && resultSet.next() && resultSet.getBoolean("Held");
+        } catch (SQLException e) {
+            throw new SQLException("Failed to place a hold on " + vaccineName + ".", e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public boolean releaseHold(int holdID) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            PreparedStatement statement = con.prepareStatement(RELEASE_HOLDS + "WHERE HoldID = ?; " + RELEASE_HOLDS_END);
+            statement.setInt(1, holdID);
+            ResultSet resultSet = Statements.firstResultSet(statement);
+            return resultSet != null && resultSet.next() && resultSet.getInt("Released") > 0;
+        } catch (SQLException e) {
+            throw new SQLException("Failed to release hold " + holdID + ".", e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public int releaseExpiredHolds() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            PreparedStatement statement = con.prepareStatement(
+                    RELEASE_HOLDS + "WHERE ExpiresAt <= SYSUTCDATETIME(); " + RELEASE_HOLDS_END);
+            ResultSet resultSet = Statements.firstResultSet(statement);
+            return resultSet != null && resultSet.next() ? resultSet.getInt("Released") : 0;
+        } catch (SQLException e) {
+            throw new SQLException("Failed to release expired holds.", e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package scheduler.repository.jdbc;
+
+import scheduler.db.ConnectionManager;
+import scheduler.model.Appointment;
+import scheduler.repository.WaitlistRepository;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+class JdbcWaitlistRepository implements WaitlistRepository {
+
+    @Override
+    public int join(Date date, String vaccineName, String patientUsername) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        // the position is counted in the same transaction, so it includes everyone queued before us
+        String joinWaitlist = "DECLARE @date DATE = ?, @vaccine VARCHAR(255) = ?, @patient VARCHAR(255) = ?; " +
+                "DECLARE @position INT = -1; " +
+                "BEGIN TRY " +
+                "    BEGIN TRANSACTION; " +
+                "    IF NOT EXISTS (SELECT 1 FROM Waitlist WITH (UPDLOCK, HOLDLOCK) " +
+                "                   WHERE Date = @date AND PatientUsername = @patient) " +
+                "    BEGIN " +
+                "        INSERT INTO Waitlist (Date, VaccineName, PatientUsername) VALUES (@date, @vaccine, @patient); " +
+                "        SELECT @position = COUNT(*) FROM Waitlist WHERE Date = @date AND EntryID <= SCOPE_IDENTITY(); " +
+                "    END " +
+                "    COMMIT TRANSACTION; " +
+                "END TRY " +
+                "BEGIN CATCH " +
+                "    IF @@TRANCOUNT > 0 ROLLBACK TRANSACTION; " +
+                "    THROW; " +
+                "END CATCH; " +
+                "SELECT @position AS Position;";
+        try {
+            PreparedStatement statement = con.prepareStatement(joinWaitlist);
+            statement.setDate(1, date);
+            statement.setString(2, vaccineName);
+            statement.setString(3, patientUsername);
+            ResultSet resultSet = Statements.firstResultSet(statement);
+            if (resultSet == null || !resultSet.next()) {
+                throw new SQLException("Joining the waitlist returned no result.");
+            }
+            return resultSet.getInt("Position");
+        } catch (SQLException e) {
+            throw new SQLException("Failed to join the waitlist.", e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Appointment bookNext(Date date, int appointmentID) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String bookNext = "DECLARE @date DATE = ?, @id INT = ?, @preferred VARCHAR(255) = NULL; " +
+                "BEGIN TRY " +
+                "    BEGIN TRANSACTION; " +
+                JdbcAppointmentRepository.BOOK_FROM_WAITLIST +
+                "    COMMIT TRANSACTION; " +
+                "END TRY " +
+                "BEGIN CATCH " +
+                "    IF @@TRANCOUNT > 0 ROLLBACK TRANSACTION; " +
+                "    THROW; " +
+                "END CATCH; " +
+                JdbcAppointmentRepository.BOOKED_ROW;
+        try {
+            PreparedStatement statement = con.prepareStatement(bookNext);
+            statement.setDate(1, date);
+            statement.setInt(2, appointmentID);
+            return Statements.bookedAppointment(Statements.firstResultSet(statement));
+        } catch (SQLException e) {
+            throw new SQLException("Failed to book from the waitlist.", e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public List<Date> findWaitingDates() throws SQLException {
+        List<Date> dates = new ArrayList<>();
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            ResultSet resultSet = con.prepareStatement("SELECT DISTINCT Date FROM Waitlist ORDER BY Date").executeQuery();
+            while (resultSet.next()) {
+                dates.add(resultSet.getDate("Date"));
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Failed to read the waitlist.", e);
+        } finally {
+            cm.closeConnection();
+        }
+        return dates;
+    }
+
+    @Override
+    public boolean isWaiting(Date date) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            PreparedStatement statement = con.prepareStatement("SELECT TOP (1) 1 FROM Waitlist WHERE Date = ?");
+            statement.setDate(1, date);
+            return statement.executeQuery().next();
+        } catch (SQLException e) {
+            throw new SQLException("Failed to read the waitlist.", e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+}
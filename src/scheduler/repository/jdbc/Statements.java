@@ -0,0 +1,38 @@
+package scheduler.repository.jdbc;
+
+import scheduler.model.Appointment;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+class Statements {
+
+    // skip over any update counts the batch produces before its result row
+    static ResultSet firstResultSet(PreparedStatement statement) throws SQLException {
+        boolean isResultSet = statement.execute();
+        while (true) {
+            if (isResultSet) {
+                return statement.getResultSet();
+            }
+            if (statement.getUpdateCount() == -1) {
+                return null;
+            }
+            isResultSet = statement.getMoreResults();
+        }
+    }
+
+    // reads the row written by JdbcAppointmentRepository.BOOKED_ROW; null if nobody was booked
+    static Appointment bookedAppointment(ResultSet resultSet) throws SQLException {
+        if (resultSet == null || !resultSet.next()) {
+            throw new SQLException("Waitlist booking returned no result.");
+        }
+        int appointmentID = resultSet.getInt("AppointmentID");
+        if (resultSet.wasNull()) {
+            return null;
+        }
+        return new Appointment.AppointmentBuilder(appointmentID, resultSet.getDate("Date"),
+                resultSet.getString("CaregiverUsername"), resultSet.getString("PatientUsername"),
+                resultSet.getString("VaccineName")).build();
+    }
+}
@@ -0,0 +1,182 @@
+package scheduler.repository.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Write-ahead log in a memory-mapped file. The header holds the sequence of the last entry the
+// database has and a random ID naming this journal in JournalProgress; after it come the entries, each
+//   payload length (int) | CRC32 of sequence and payload (int) | sequence (long) | payload
+// and a zero length marking the end. Appending only copies into the mapping, which survives the
+// process dying; sync() also forces it to disk, once for all the appends that came in while the
+// previous force was running. When the database has caught up, writing starts over at the front.
+class Journal {
+
+    private static final int MAGIC = 0x4a524e4c;
+    private static final int VERSION = 2;
+    private static final int HEADER = 24;
+    private static final int ENTRY_HEADER = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final long id;
+    private final Object syncLock = new Object();
+
+    private int position = HEADER;
+    private long lastSequence;
+    private long appliedSequence;
+    private long syncedSequence;
+
+    Journal(Path file, int size) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        capacity = (int) Math.max(size, channel.size());
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        if (buffer.getInt(0) == 0) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, 0);
+            buffer.putLong(16, new SecureRandom().nextLong());
+            buffer.putInt(HEADER, 0);
+            buffer.force();
+        } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException(file + " is not an appointment journal.");
+        }
+        appliedSequence = buffer.getLong(8);
+        id = buffer.getLong(16);
+        lastSequence = appliedSequence;
+        syncedSequence = appliedSequence;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    // The entries the database does not have yet, in order. Reading stops at the first entry that
+    // is torn, corrupt or out of sequence; nothing after it was ever acknowledged. Appends go after
+    // the last good entry.
+    synchronized List<JournalEntry> recover() throws IOException {
+        List<JournalEntry> pending = new ArrayList<>();
+        int pos = HEADER;
+        long previous = -1;
+        while (pos + ENTRY_HEADER <= capacity) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || pos + ENTRY_HEADER + length + 4 > capacity) {
+                break;
+            }
+            long sequence = buffer.getLong(pos + 8);
+            byte[] payload = new byte[length];
+            buffer.duplicate().position(pos + ENTRY_HEADER).get(payload);
+            if (buffer.getInt(pos + 4) != checksum(sequence, payload) || (previous != -1 && sequence != previous + 1)) {
+                break;
+            }
+            if (sequence > appliedSequence) {
+                JournalEntry entry = JournalEntry.decode(payload);
+                entry.sequence = sequence;
+                pending.add(entry);
+            }
+            previous = sequence;
+            lastSequence = Math.max(lastSequence, sequence);
+            pos += ENTRY_HEADER + length;
+        }
+        position = pos;
+        buffer.putInt(position, 0);
+        syncedSequence = lastSequence;
+        return pending;
+    }
+
+    // Copies the entry into the log and returns its sequence. When the log is full this waits for
+    // the database to catch up, so the flusher sets the pace.
+    synchronized long append(JournalEntry entry) throws IOException {
+        byte[] payload = entry.encode();
+        int needed = ENTRY_HEADER + payload.length + 4;
+        if (HEADER + needed > capacity) {
+            throw new IOException("Journal entry of " + payload.length + " bytes does not fit in the journal.");
+        }
+        while (position + needed > capacity) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for room in the journal.", e);
+            }
+        }
+        long sequence = lastSequence + 1;
+        buffer.duplicate().position(position + ENTRY_HEADER).put(payload);
+        buffer.putInt(position + ENTRY_HEADER + payload.length, 0);
+        buffer.putLong(position + 8, sequence);
+        buffer.putInt(position + 4, checksum(sequence, payload));
+        // the length goes in last, so a reader never sees a length without the entry behind it
+        buffer.putInt(position, payload.length);
+        position += ENTRY_HEADER + payload.length;
+        lastSequence = sequence;
+        entry.sequence = sequence;
+        return sequence;
+    }
+
+    // Returns once the entry is on disk.
+    void sync(long sequence) {
+        synchronized (syncLock) {
+            if (syncedSequence >= sequence) {
+                return;
+            }
+            long upTo;
+            synchronized (this) {
+                upTo = lastSequence;
+            }
+            buffer.force();
+            syncedSequence = upTo;
+        }
+    }
+
+    // Records that the database has every entry up to sequence.
+    synchronized void markApplied(long sequence) {
+        appliedSequence = sequence;
+        buffer.putLong(8, sequence);
+        if (sequence == lastSequence) {
+            position = HEADER;
+            buffer.putInt(HEADER, 0);
+        }
+        notifyAll();
+    }
+
+    // Entries appended that the database does not have yet.
+    synchronized long getUnappliedCount() {
+        return lastSequence - appliedSequence;
+    }
+
+    // Waits up to timeoutMillis for the database to have every entry appended so far; returns
+    // whether it has.
+    synchronized boolean awaitApplied(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long target = lastSequence;
+        while (appliedSequence < target) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                return false;
+            }
+            wait(left);
+        }
+        return true;
+    }
+
+    void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private static int checksum(long sequence, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putLong(0, sequence));
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,137 @@
+package scheduler.repository.journal;
+
+import scheduler.db.ConnectionManager;
+import scheduler.model.Appointment;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+// Writes journal entries to the database. The decisions were made when the entries were written,
+// so nothing is chosen here: each entry names the caregiver whose slot to take and the hold to
+// consume. The statements can't tell on their own whether an entry was applied before (a cancel
+// that ran already would give its dose back twice), so the sequence of the last entry applied is
+// kept in JournalProgress, in the same transaction as the entries; entries at or below it are
+// skipped, which makes replaying a batch after a crash between the commit and the journal
+// recording it harmless. Memory judges hold expiry by this process's clock and the database's
+// sweep by its own, so a hold memory consumed may already have been released (its dose returned)
+// in the database; the dose is then taken from Vaccines instead, as memory did.
+class JournalApplier {
+
+    private static final String APPLIED_SEQUENCE =
+            "SELECT AppliedSequence FROM JournalProgress WITH (UPDLOCK, HOLDLOCK) WHERE JournalID = ?";
+
+    private static final String RECORD_SEQUENCE =
+            "UPDATE JournalProgress SET AppliedSequence = ? WHERE JournalID = ?; " +
+            "IF @@ROWCOUNT = 0 INSERT INTO JournalProgress (JournalID, AppliedSequence) VALUES (?, ?);";
+
+    private static final String BOOK =
+            "DECLARE @id INT = ?, @date DATE = ?, @caregiver VARCHAR(255) = ?, @patient VARCHAR(255) = ?, " +
+            "@vaccine VARCHAR(255) = ?, @hold INT = ?, @waitlisted BIT = ?; " +
+            "IF NOT EXISTS (SELECT 1 FROM Appointments WHERE AppointmentID = @id) " +
+            "BEGIN " +
+            "    IF @hold IS NULL " +
+            "        UPDATE Vaccines SET Doses = Doses - 1 WHERE Name = @vaccine; " +
+            "    ELSE " +
+            "    BEGIN " +
+            "        DELETE FROM DoseHolds WHERE HoldID = @hold; " +
+            "        IF @@ROWCOUNT = 0 " +
+            "            UPDATE Vaccines SET Doses = Doses - 1 WHERE Name = @vaccine; " +
+            "    END " +
+            "    IF @waitlisted = 1 " +
+            "        DELETE FROM Waitlist WHERE Date = @date AND PatientUsername = @patient; " +
+            "    UPDATE Availabilities SET DosesLeft = DosesLeft - 1 WHERE Time = @date AND Username = @caregiver; " +
+            "    INSERT INTO Appointments (AppointmentID, Date, CaregiverUsername, PatientUsername, VaccineName) " +
+            "        VALUES (@id, @date, @caregiver, @patient, @vaccine); " +
+            "END";
+
+    private static final String CANCEL =
+            "DECLARE @id INT = ?; " +
+            "DECLARE @cancelled TABLE (Date DATE, CaregiverUsername VARCHAR(255), VaccineName VARCHAR(255)); " +
+            "DELETE FROM Appointments " +
+            "    OUTPUT deleted.Date, deleted.CaregiverUsername, deleted.VaccineName INTO @cancelled " +
+            "    WHERE AppointmentID = @id; " +
+            "UPDATE v SET Doses = v.Doses + 1 FROM Vaccines v JOIN @cancelled c ON v.Name = c.VaccineName; " +
+            "UPDATE a SET DosesLeft = a.DosesLeft + 1 FROM Availabilities a " +
+            "    JOIN @cancelled c ON a.Time = c.Date AND a.Username = c.CaregiverUsername;";
+
+    // Applies the entries of the journal with the given ID in order in one transaction, leaving
+    // out those the database already has. Runs of the same statement go to the server as one JDBC
+    // batch.
+    static void apply(long journalID, List<JournalEntry> entries) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            con.setAutoCommit(false);
+            long applied = 0;
+            PreparedStatement progress = con.prepareStatement(APPLIED_SEQUENCE);
+            progress.setLong(1, journalID);
+            ResultSet resultSet = progress.executeQuery();
+            if (resultSet.next()) {
+                applied = resultSet.getLong("AppliedSequence");
+            }
+            PreparedStatement book = con.prepareStatement(BOOK);
+            PreparedStatement cancel = con.prepareStatement(CANCEL);
+            PreparedStatement batched = null;
+            for (JournalEntry entry : entries) {
+                if (entry.sequence <= applied) {
+                    continue;
+                }
+                PreparedStatement next = entry.type == JournalEntry.CANCELLED ? cancel : book;
+                if (batched != null && batched != next) {
+                    batched.executeBatch();
+                }
+                batched = next;
+                if (entry.type == JournalEntry.CANCELLED) {
+                    cancel.setInt(1, entry.appointmentID);
+                    cancel.addBatch();
+                    if (entry.appointment != null) {
+                        cancel.executeBatch();
+                        addBook(book, entry.appointment, -1, true);
+                        batched = book;
+                    }
+                } else {
+                    addBook(book, entry.appointment, entry.holdID, entry.type == JournalEntry.BOOKED);
+                }
+            }
+            if (batched != null) {
+                batched.executeBatch();
+            }
+            long last = entries.get(entries.size() - 1).sequence;
+            if (last > applied) {
+                PreparedStatement record = con.prepareStatement(RECORD_SEQUENCE);
+                record.setLong(1, last);
+                record.setLong(2, journalID);
+                record.setLong(3, journalID);
+                record.setLong(4, last);
+                record.executeUpdate();
+            }
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw new SQLException("Failed to apply the appointment journal to the database.", e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private static void addBook(PreparedStatement book, Appointment appointment, int holdID, boolean waitlisted)
+            throws SQLException {
+        book.setInt(1, appointment.getAppointmentID());
+        book.setDate(2, appointment.getDate());
+        book.setString(3, appointment.getCaregiverUsername());
+        book.setString(4, appointment.getPatientUsername());
+        book.setString(5, appointment.getVaccineName());
+        if (holdID == -1) {
+            book.setNull(6, Types.INTEGER);
+        } else {
+            book.setInt(6, holdID);
+        }
+        book.setBoolean(7, waitlisted);
+        book.addBatch();
+    }
+}
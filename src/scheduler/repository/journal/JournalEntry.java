@@ -0,0 +1,85 @@
+package scheduler.repository.journal;
+
+import scheduler.model.Appointment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Date;
+import java.time.LocalDate;
+
+// One appointment write as it was decided in memory, with everything the database needs to repeat
+// it: which caregiver's slot was taken, and whether a hold was consumed or a waiting patient booked.
+class JournalEntry {
+
+    // appointment inserted, slot and dose (or the hold) taken
+    static final byte RESERVED = 1;
+    // appointment deleted and its dose returned; the slot is freed or goes to the backfill
+    static final byte CANCELLED = 2;
+    // a waiting patient booked into an open slot and taken off the waitlist
+    static final byte BOOKED = 3;
+
+    final byte type;
+    final int appointmentID;
+    // the row reserved or booked; for CANCELLED the waiting patient's new appointment, or null
+    final Appointment appointment;
+    // the hold a reservation consumed, or -1
+    final int holdID;
+    long sequence;
+
+    private JournalEntry(byte type, int appointmentID, Appointment appointment, int holdID) {
+        this.type = type;
+        this.appointmentID = appointmentID;
+        this.appointment = appointment;
+        this.holdID = holdID;
+    }
+
+    static JournalEntry reserved(Appointment appointment, Integer holdID) {
+        return new JournalEntry(RESERVED, appointment.getAppointmentID(), appointment, holdID == null ? -1 : holdID);
+    }
+
+    static JournalEntry cancelled(int appointmentID, Appointment backfill) {
+        return new JournalEntry(CANCELLED, appointmentID, backfill, -1);
+    }
+
+    static JournalEntry booked(Appointment appointment) {
+        return new JournalEntry(BOOKED, appointment.getAppointmentID(), appointment, -1);
+    }
+
+    byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        out.writeInt(appointmentID);
+        out.writeInt(holdID);
+        out.writeBoolean(appointment != null);
+        if (appointment != null) {
+            out.writeInt(appointment.getAppointmentID());
+            out.writeLong(appointment.getDate().toLocalDate().toEpochDay());
+            out.writeUTF(appointment.getCaregiverUsername());
+            out.writeUTF(appointment.getPatientUsername());
+            out.writeUTF(appointment.getVaccineName());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static JournalEntry decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        if (type != RESERVED && type != CANCELLED && type != BOOKED) {
+            throw new IOException("Unknown journal entry type " + type);
+        }
+        int appointmentID = in.readInt();
+        int holdID = in.readInt();
+        Appointment appointment = null;
+        if (in.readBoolean()) {
+            int id = in.readInt();
+            Date date = Date.valueOf(LocalDate.ofEpochDay(in.readLong()));
+            appointment = new Appointment.AppointmentBuilder(id, date, in.readUTF(), in.readUTF(), in.readUTF()).build();
+        }
+        return new JournalEntry(type, appointmentID, appointment, holdID);
+    }
+}
@@ -0,0 +1,81 @@
+package scheduler.repository.journal;
+
+import scheduler.model.Appointment;
+import scheduler.model.Reservation;
+import scheduler.repository.AppointmentRepository;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+
+class JournaledAppointmentRepository implements AppointmentRepository {
+
+    private final JournaledStorage storage;
+
+    JournaledAppointmentRepository(JournaledStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public int nextId() throws SQLException {
+        // the database hands out the IDs, so they never clash with appointments made before a restart
+        return storage.database.appointments().nextId();
+    }
+
+    @Override
+    public void save(Appointment appointment) throws SQLException {
+        storage.writeThrough(() -> {
+            storage.database.appointments().save(appointment);
+            storage.memory.appointments().save(appointment);
+            return null;
+        });
+    }
+
+    @Override
+    public Reservation reserve(Date date, String vaccineName, String patientUsername, int appointmentID,
+                               Integer holdID) throws SQLException {
+        return storage.journaled(
+                () -> storage.memory.appointments().reserve(date, vaccineName, patientUsername, appointmentID, holdID),
+                reservation -> !reservation.isReserved() ? null : JournalEntry.reserved(
+                        new Appointment.AppointmentBuilder(appointmentID, date, reservation.getCaregiverUsername(),
+                                patientUsername, vaccineName).build(), holdID));
+    }
+
+    @Override
+    public Appointment delete(int appointmentID, int backfillID) throws SQLException {
+        return storage.journaled(() -> storage.memory.appointments().delete(appointmentID, backfillID),
+                backfill -> JournalEntry.cancelled(appointmentID, backfill));
+    }
+
+    @Override
+    public Appointment findById(int appointmentID) throws SQLException {
+        return storage.memory.appointments().findById(appointmentID);
+    }
+
+    @Override
+    public List<Appointment> findByPatient(String patientUsername) throws SQLException {
+        return storage.memory.appointments().findByPatient(patientUsername);
+    }
+
+    @Override
+    public List<Appointment> findByCaregiver(String caregiverUsername) throws SQLException {
+        return storage.memory.appointments().findByCaregiver(caregiverUsername);
+    }
+
+    @Override
+    public List<Appointment> findPageByPatient(String patientUsername, Date from, Date to, Appointment after,
+                                               int offset, int limit) throws SQLException {
+        return storage.memory.appointments().findPageByPatient(patientUsername, from, to, after, offset, limit);
+    }
+
+    @Override
+    public List<Appointment> findPageByCaregiver(String caregiverUsername, Date from, Date to, Appointment after,
+                                                 int offset, int limit) throws SQLException {
+        return storage.memory.appointments().findPageByCaregiver(caregiverUsername, from, to, after, offset, limit);
+    }
+
+    @Override
+    public int findLatestIdForPatient(String patientUsername) throws SQLException {
+        return storage.memory.appointments().findLatestIdForPatient(patientUsername);
+    }
+}
@@ -0,0 +1,52 @@
+package scheduler.repository.journal;
+
+import scheduler.model.Availability;
+import scheduler.repository.AvailabilityRepository;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SortedMap;
+
+class JournaledAvailabilityRepository implements AvailabilityRepository {
+
+    private final JournaledStorage storage;
+
+    JournaledAvailabilityRepository(JournaledStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public List<Availability> saveAll(List<Availability> availabilities, int batchSize) throws SQLException {
+        return storage.writeThrough(() -> {
+            List<Availability> inserted = storage.database.availabilities().saveAll(availabilities, batchSize);
+            storage.memory.availabilities().saveAll(inserted, batchSize);
+            return inserted;
+        });
+    }
+
+    @Override
+    public SortedMap<String, Integer> findOpenSlots(Date date) throws SQLException {
+        return storage.memory.availabilities().findOpenSlots(date);
+    }
+
+    @Override
+    public int rebuildCapacity(Date start, Date end) throws SQLException {
+        return storage.writeThrough(() -> {
+            int corrected = storage.database.availabilities().rebuildCapacity(start, end);
+            storage.memory.availabilities().rebuildCapacity(start, end);
+            return corrected;
+        });
+    }
+
+    @Override
+    public Date[] findDateBounds() throws SQLException {
+        return storage.memory.availabilities().findDateBounds();
+    }
+
+    @Override
+    public SortedMap<LocalDate, SortedMap<String, Integer>> findOpenSlots(Date start, Date end) throws SQLException {
+        return storage.memory.availabilities().findOpenSlots(start, end);
+    }
+}
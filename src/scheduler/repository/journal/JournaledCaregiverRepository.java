@@ -0,0 +1,51 @@
+package scheduler.repository.journal;
+
+import scheduler.model.Caregiver;
+import scheduler.repository.CaregiverRepository;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+class JournaledCaregiverRepository implements CaregiverRepository {
+
+    private final JournaledStorage storage;
+
+    JournaledCaregiverRepository(JournaledStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public void save(Caregiver caregiver) throws SQLException {
+        storage.writeThrough(() -> {
+            storage.database.caregivers().save(caregiver);
+            storage.memory.caregivers().save(caregiver);
+            return null;
+        });
+    }
+
+    @Override
+    public void saveAll(List<Caregiver> caregivers, int batchSize) throws SQLException {
+        storage.writeThrough(() -> {
+            storage.database.caregivers().saveAll(caregivers, batchSize);
+            storage.memory.caregivers().saveAll(caregivers, batchSize);
+            return null;
+        });
+    }
+
+    @Override
+    public Caregiver find(String username) throws SQLException {
+        return storage.memory.caregivers().find(username);
+    }
+
+    @Override
+    public boolean exists(String username) throws SQLException {
+        return storage.memory.caregivers().exists(username);
+    }
+
+    @Override
+    public Set<String> findExistingUsernames(Collection<String> usernames) throws SQLException {
+        return storage.memory.caregivers().findExistingUsernames(usernames);
+    }
+}
@@ -0,0 +1,51 @@
+package scheduler.repository.journal;
+
+import scheduler.model.Patient;
+import scheduler.repository.PatientRepository;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+class JournaledPatientRepository implements PatientRepository {
+
+    private final JournaledStorage storage;
+
+    JournaledPatientRepository(JournaledStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public void save(Patient patient) throws SQLException {
+        storage.writeThrough(() -> {
+            storage.database.patients().save(patient);
+            storage.memory.patients().save(patient);
+            return null;
+        });
+    }
+
+    @Override
+    public void saveAll(List<Patient> patients, int batchSize) throws SQLException {
+        storage.writeThrough(() -> {
+            storage.database.patients().saveAll(patients, batchSize);
+            storage.memory.patients().saveAll(patients, batchSize);
+            return null;
+        });
+    }
+
+    @Override
+    public Patient find(String username) throws SQLException {
+        return storage.memory.patients().find(username);
+    }
+
+    @Override
+    public boolean exists(String username) throws SQLException {
+        return storage.memory.patients().exists(username);
+    }
+
+    @Override
+    public Set<String> findExistingUsernames(Collection<String> usernames) throws SQLException {
+        return storage.memory.patients().findExistingUsernames(usernames);
+    }
+}
@@ -0,0 +1,251 @@
+package scheduler.repository.journal;
+
+import scheduler.db.ConnectionManager;
+import scheduler.repository.AppointmentRepository;
+import scheduler.repository.AvailabilityRepository;
+import scheduler.repository.CaregiverRepository;
+import scheduler.repository.PatientRepository;
+import scheduler.repository.Storage;
+import scheduler.repository.VaccineRepository;
+import scheduler.repository.WaitlistRepository;
+import scheduler.repository.jdbc.JdbcStorage;
+import scheduler.repository.memory.MemoryStorage;
+import scheduler.util.Config;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// Storage=journal: SQL Server with appointment writes acknowledged from a local write-ahead journal
+// (JournalFile) instead of waiting for the database. At startup the journal is replayed into the
+// database and the database is loaded into a memory engine. Reads are served from memory; reserve,
+// cancel and waitlist bookings are decided in memory, appended to the journal and acknowledged, and
+// a flusher thread applies the journal to the database in batches of up to JournalBatchSize
+// entries. With JournalSync (the default) an entry is forced to disk before it is acknowledged;
+// without it, it survives the process dying but not the machine.
+//
+// Every other write goes to the database first and then to memory, once the database has all
+// journaled entries, under the lock the journaled writes take; these are the rare writes (accounts,
+// uploads, doses, holds), so waiting for the flusher there is cheap. Since memory is the copy the
+// decisions are made on, this process must be the only one writing to the database.
+public class JournaledStorage implements Storage {
+
+    private static final int BATCH_SIZE = Config.getInt("JournalBatchSize", 500);
+    private static final long FLUSH_INTERVAL_MILLIS = Config.getLong("JournalFlushIntervalMs", 20);
+    private static final long RETRY_MILLIS = Config.getLong("JournalRetryMs", 1000);
+    private static final long SHUTDOWN_WAIT_MILLIS = 5000;
+
+    final JdbcStorage database;
+    final MemoryStorage memory;
+    private final Journal journal;
+    private final boolean sync;
+    // held while a write changes memory and journals it, or writes through, so the journal has
+    // writes in the order memory saw them
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // journaled and not yet applied, oldest first
+    private final ConcurrentLinkedQueue<JournalEntry> pending = new ConcurrentLinkedQueue<>();
+    private final Thread flusher;
+    private volatile SQLException flushFailure = null;
+    private volatile boolean closed = false;
+
+    private final PatientRepository patients = new JournaledPatientRepository(this);
+    private final CaregiverRepository caregivers = new JournaledCaregiverRepository(this);
+    private final AvailabilityRepository availabilities = new JournaledAvailabilityRepository(this);
+    private final VaccineRepository vaccines = new JournaledVaccineRepository(this);
+    private final AppointmentRepository appointments = new JournaledAppointmentRepository(this);
+    private final WaitlistRepository waitlist = new JournaledWaitlistRepository(this);
+
+    private JournaledStorage(JdbcStorage database, MemoryStorage memory, Journal journal, boolean sync) {
+        this.database = database;
+        this.memory = memory;
+        this.journal = journal;
+        this.sync = sync;
+        this.flusher = new Thread(this::flush, "journal-flusher");
+        this.flusher.setDaemon(true);
+    }
+
+    public static JournaledStorage open() {
+        Path file = Paths.get(Config.getString("JournalFile", "appointments.journal"));
+        try {
+            Journal journal = new Journal(file, Config.getInt("JournalSizeBytes", 64 * 1024 * 1024));
+            List<JournalEntry> unapplied = journal.recover();
+            for (int i = 0; i < unapplied.size(); i += BATCH_SIZE) {
+                List<JournalEntry> batch = unapplied.subList(i, Math.min(i + BATCH_SIZE, unapplied.size()));
+                JournalApplier.apply(journal.getId(), batch);
+                journal.markApplied(batch.get(batch.size() - 1).sequence);
+            }
+            if (!unapplied.isEmpty()) {
+                System.out.println("Replayed " + unapplied.size() + " journal entries into the database.");
+            }
+            MemoryStorage memory = new MemoryStorage();
+            Snapshot.load(memory);
+            JournaledStorage storage = new JournaledStorage(new JdbcStorage(), memory, journal,
+                    Config.getBoolean("JournalSync", true));
+            storage.flusher.start();
+            // the last flush needs the connection pool, so it runs before the pool is shut down
+            ConnectionManager.beforeShutdown(storage::close);
+            return storage;
+        } catch (IOException | SQLException e) {
+            throw new IllegalStateException("Failed to open the appointment journal " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "journal";
+    }
+
+    @Override
+    public PatientRepository patients() {
+        return patients;
+    }
+
+    @Override
+    public CaregiverRepository caregivers() {
+        return caregivers;
+    }
+
+    @Override
+    public AvailabilityRepository availabilities() {
+        return availabilities;
+    }
+
+    @Override
+    public VaccineRepository vaccines() {
+        return vaccines;
+    }
+
+    @Override
+    public AppointmentRepository appointments() {
+        return appointments;
+    }
+
+    @Override
+    public WaitlistRepository waitlist() {
+        return waitlist;
+    }
+
+    // Entries written but not yet in the database.
+    public long getPendingCount() {
+        return journal.getUnappliedCount();
+    }
+
+    interface Write<T> {
+        T run() throws SQLException;
+    }
+
+    // Runs the write against memory and journals what it did (entry returns null if it did
+    // nothing); returns once the entry is in the journal.
+    <T> T journaled(Write<T> write, Function<T, JournalEntry> entry) throws SQLException {
+        T result;
+        long sequence = -1;
+        writeLock.lock();
+        try {
+            result = write.run();
+            JournalEntry written = entry.apply(result);
+            if (written != null) {
+                sequence = journal.append(written);
+                pending.add(written);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to write the appointment journal.", e);
+        } finally {
+            writeLock.unlock();
+        }
+        if (sequence != -1) {
+            if (sync) {
+                journal.sync(sequence);
+            }
+            LockSupport.unpark(flusher);
+        }
+        return result;
+    }
+
+    // Runs a write that goes to the database and then to memory, once the database has every
+    // journaled entry.
+    <T> T writeThrough(Write<T> write) throws SQLException {
+        writeLock.lock();
+        try {
+            awaitApplied();
+            return write.run();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void awaitApplied() throws SQLException {
+        LockSupport.unpark(flusher);
+        try {
+            while (!journal.awaitApplied(RETRY_MILLIS)) {
+                SQLException failure = flushFailure;
+                if (failure != null) {
+                    throw new SQLException("The appointment journal could not be applied to the database.", failure);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the appointment journal.", e);
+        }
+    }
+
+    private void flush() {
+        List<JournalEntry> batch = new ArrayList<>();
+        while (true) {
+            JournalEntry entry;
+            while (batch.size() < BATCH_SIZE && (entry = pending.poll()) != null) {
+                batch.add(entry);
+            }
+            if (batch.isEmpty()) {
+                if (closed) {
+                    return;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS));
+                continue;
+            }
+            try {
+                JournalApplier.apply(journal.getId(), batch);
+                journal.markApplied(batch.get(batch.size() - 1).sequence);
+                batch.clear();
+                flushFailure = null;
+            } catch (SQLException e) {
+                // the entries stay in the journal and are replayed at the next start if we never get through
+                if (flushFailure == null) {
+                    System.out.println("Error occurred when applying the appointment journal, retrying");
+                    e.printStackTrace();
+                }
+                flushFailure = e;
+                if (closed) {
+                    return;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(RETRY_MILLIS));
+            }
+        }
+    }
+
+    // Gives the flusher a moment to empty the journal before the process exits; whatever is left is
+    // replayed at the next start.
+    public void close() {
+        writeLock.lock();
+        try {
+            closed = true;
+            LockSupport.unpark(flusher);
+            flusher.join(SHUTDOWN_WAIT_MILLIS);
+            journal.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.out.println("Error occurred when closing the appointment journal");
+            e.printStackTrace();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
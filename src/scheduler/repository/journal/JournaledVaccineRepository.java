@@ -0,0 +1,82 @@
+package scheduler.repository.journal;
+
+import scheduler.model.Vaccine;
+import scheduler.repository.VaccineRepository;
+
+import java.sql.SQLException;
+import java.util.SortedMap;
+
+class JournaledVaccineRepository implements VaccineRepository {
+
+    private final JournaledStorage storage;
+
+    JournaledVaccineRepository(JournaledStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public void save(Vaccine vaccine) throws SQLException {
+        storage.writeThrough(() -> {
+            storage.database.vaccines().save(vaccine);
+            storage.memory.vaccines().save(vaccine);
+            return null;
+        });
+    }
+
+    @Override
+    public Vaccine find(String vaccineName) throws SQLException {
+        return storage.memory.vaccines().find(vaccineName);
+    }
+
+    @Override
+    public SortedMap<String, Integer> findAllDoses() throws SQLException {
+        return storage.memory.vaccines().findAllDoses();
+    }
+
+    @Override
+    public int adjustDoses(String vaccineName, int delta) throws SQLException {
+        return storage.writeThrough(() -> {
+            int doses = storage.database.vaccines().adjustDoses(vaccineName, delta);
+            if (doses >= 0) {
+                storage.memory.vaccines().adjustDoses(vaccineName, delta);
+            }
+            return doses;
+        });
+    }
+
+    @Override
+    public int nextHoldId() throws SQLException {
+        // the database hands out the IDs, so they never clash with holds placed before a restart
+        return storage.database.vaccines().nextHoldId();
+    }
+
+    @Override
+    public boolean placeHold(int holdID, String vaccineName, String patientUsername, long ttlMillis)
+            throws SQLException {
+        return storage.writeThrough(() -> {
+            boolean held = storage.database.vaccines().placeHold(holdID, vaccineName, patientUsername, ttlMillis);
+            if (held) {
+                storage.memory.vaccines().placeHold(holdID, vaccineName, patientUsername, ttlMillis);
+            }
+            return held;
+        });
+    }
+
+    @Override
+    public boolean releaseHold(int holdID) throws SQLException {
+        return storage.writeThrough(() -> {
+            boolean released = storage.database.vaccines().releaseHold(holdID);
+            storage.memory.vaccines().releaseHold(holdID);
+            return released;
+        });
+    }
+
+    @Override
+    public int releaseExpiredHolds() throws SQLException {
+        return storage.writeThrough(() -> {
+            int released = storage.database.vaccines().releaseExpiredHolds();
+            storage.memory.vaccines().releaseExpiredHolds();
+            return released;
+        });
+    }
+}
@@ -0,0 +1,44 @@
+package scheduler.repository.journal;
+
+import scheduler.model.Appointment;
+import scheduler.repository.WaitlistRepository;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+
+class JournaledWaitlistRepository implements WaitlistRepository {
+
+    private final JournaledStorage storage;
+
+    JournaledWaitlistRepository(JournaledStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public int join(Date date, String vaccineName, String patientUsername) throws SQLException {
+        return storage.writeThrough(() -> {
+            int position = storage.database.waitlist().join(date, vaccineName, patientUsername);
+            if (position > 0) {
+                storage.memory.waitlist().join(date, vaccineName, patientUsername);
+            }
+            return position;
+        });
+    }
+
+    @Override
+    public Appointment bookNext(Date date, int appointmentID) throws SQLException {
+        return storage.journaled(() -> storage.memory.waitlist().bookNext(date, appointmentID),
+                booked -> booked == null ? null : JournalEntry.booked(booked));
+    }
+
+    @Override
+    public List<Date> findWaitingDates() throws SQLException {
+        return storage.memory.waitlist().findWaitingDates();
+    }
+
+    @Override
+    public boolean isWaiting(Date date) throws SQLException {
+        return storage.memory.waitlist().isWaiting(date);
+    }
+}
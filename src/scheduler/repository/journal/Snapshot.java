@@ -0,0 +1,111 @@
+package scheduler.repository.journal;
+
+import scheduler.db.ConnectionManager;
+import scheduler.model.Appointment;
+import scheduler.model.Availability;
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+import scheduler.model.Vaccine;
+import scheduler.repository.Storage;
+import scheduler.util.Util;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Copies the database into a memory engine through its repositories, so the copy gets the same
+// checks and derived state as rows written there directly. Runs at startup, after the journal has
+// been replayed and before anything else writes.
+class Snapshot {
+
+    private static final int BATCH_SIZE = 1000;
+
+    static void load(Storage memory) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+        int isolation = con.getTransactionIsolation();
+
+        try {
+            // one consistent view of every table
+            con.setAutoCommit(false);
+            con.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+
+            List<Patient> patients = new ArrayList<>();
+            ResultSet resultSet = con.createStatement().executeQuery("SELECT Username, Salt, Hash FROM Patients");
+            while (resultSet.next()) {
+                // the hash column is padded, as in the JDBC repositories
+                patients.add(new Patient.PatientBuilder(resultSet.getString("Username"), resultSet.getBytes("Salt"),
+                        Util.trim(resultSet.getBytes("Hash"))).build());
+            }
+            memory.patients().saveAll(patients, BATCH_SIZE);
+
+            List<Caregiver> caregivers = new ArrayList<>();
+            resultSet = con.createStatement().executeQuery("SELECT Username, Salt, Hash FROM Caregivers");
+            while (resultSet.next()) {
+                caregivers.add(new Caregiver.CaregiverBuilder(resultSet.getString("Username"),
+                        resultSet.getBytes("Salt"), Util.trim(resultSet.getBytes("Hash"))).build());
+            }
+            memory.caregivers().saveAll(caregivers, BATCH_SIZE);
+
+            // held doses are taken out again below, when the holds are placed
+            resultSet = con.createStatement().executeQuery("SELECT v.Name, v.Doses + " +
+                    "(SELECT COUNT(*) FROM DoseHolds h WHERE h.VaccineName = v.Name) AS Doses FROM Vaccines v");
+            while (resultSet.next()) {
+                memory.vaccines().save(new Vaccine.VaccineBuilder(resultSet.getString("Name"),
+                        resultSet.getInt("Doses")).build());
+            }
+
+            List<Availability> availabilities = new ArrayList<>();
+            resultSet = con.createStatement().executeQuery("SELECT Time, Username, Capacity FROM Availabilities");
+            while (resultSet.next()) {
+                availabilities.add(new Availability(resultSet.getDate("Time"), resultSet.getString("Username"),
+                        resultSet.getInt("Capacity")));
+            }
+            memory.availabilities().saveAll(availabilities, BATCH_SIZE);
+
+            resultSet = con.createStatement().executeQuery("SELECT AppointmentID, Date, CaregiverUsername, " +
+                    "PatientUsername, VaccineName FROM Appointments");
+            while (resultSet.next()) {
+                memory.appointments().save(new Appointment.AppointmentBuilder(resultSet.getInt("AppointmentID"),
+                        resultSet.getDate("Date"), resultSet.getString("CaregiverUsername"),
+                        resultSet.getString("PatientUsername"), resultSet.getString("VaccineName")).build());
+            }
+            // the slots were created at full capacity; take out what the appointments use
+            Date[] bounds = memory.availabilities().findDateBounds();
+            if (bounds != null) {
+                memory.availabilities().rebuildCapacity(bounds[0], bounds[1]);
+            }
+
+            resultSet = con.createStatement().executeQuery("SELECT HoldID, VaccineName, PatientUsername, " +
+                    "DATEDIFF_BIG(millisecond, SYSUTCDATETIME(), ExpiresAt) AS TtlMillis FROM DoseHolds");
+            while (resultSet.next()) {
+                // an expired hold still holds its dose until it is released; a millisecond is enough
+                memory.vaccines().placeHold(resultSet.getInt("HoldID"), resultSet.getString("VaccineName"),
+                        resultSet.getString("PatientUsername"), Math.max(1, resultSet.getLong("TtlMillis")));
+            }
+
+            resultSet = con.createStatement().executeQuery("SELECT Date, VaccineName, PatientUsername " +
+                    "FROM Waitlist ORDER BY EntryID");
+            while (resultSet.next()) {
+                memory.waitlist().join(resultSet.getDate("Date"), resultSet.getString("VaccineName"),
+                        resultSet.getString("PatientUsername"));
+            }
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw new SQLException("Failed to load the database into memory.", e);
+        } finally {
+            // the connection goes back to the shared pool
+            try {
+                con.setAutoCommit(true);
+                con.setTransactionIsolation(isolation);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            cm.closeConnection();
+        }
+    }
+}
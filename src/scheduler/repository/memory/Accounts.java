@@ -0,0 +1,79 @@
+package scheduler.repository.memory;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// The Patients and Caregivers tables have the same shape, so both repositories share this.
+class Accounts<T> {
+
+    private final MemoryStorage storage;
+    private final ConcurrentHashMap<String, T> rows;
+    private final Function<T, String> username;
+    private final String table;
+
+    Accounts(MemoryStorage storage, ConcurrentHashMap<String, T> rows, Function<T, String> username, String table) {
+        this.storage = storage;
+        this.rows = rows;
+        this.username = username;
+        this.table = table;
+    }
+
+    void save(T account) throws SQLException {
+        storage.writeLock.lock();
+        try {
+            if (rows.putIfAbsent(MemoryStorage.key(username.apply(account)), account) != null) {
+                throw duplicate(username.apply(account));
+            }
+        } finally {
+            storage.writeLock.unlock();
+        }
+    }
+
+    void saveAll(List<T> accounts) throws SQLException {
+        storage.writeLock.lock();
+        try {
+            Set<String> keys = new HashSet<>();
+            for (T account : accounts) {
+                String key = MemoryStorage.key(username.apply(account));
+                if (rows.containsKey(key) || !keys.add(key)) {
+                    throw new SQLException("Failed to save " + table.toLowerCase(Locale.ROOT) + " to the database.",
+                            duplicate(username.apply(account)));
+                }
+            }
+            for (T account : accounts) {
+                rows.put(MemoryStorage.key(username.apply(account)), account);
+            }
+        } finally {
+            storage.writeLock.unlock();
+        }
+    }
+
+    T find(String name) {
+        return rows.get(MemoryStorage.key(name));
+    }
+
+    boolean exists(String name) {
+        return rows.containsKey(MemoryStorage.key(name));
+    }
+
+    Set<String> findExistingUsernames(Collection<String> names) {
+        Set<String> existing = new HashSet<>();
+        for (String name : names) {
+            T account = rows.get(MemoryStorage.key(name));
+            if (account != null) {
+                existing.add(username.apply(account));
+            }
+        }
+        return existing;
+    }
+
+    private SQLException duplicate(String name) {
+        return new SQLException("Violation of PRIMARY KEY constraint on " + table + ": " + name, "23000");
+    }
+}
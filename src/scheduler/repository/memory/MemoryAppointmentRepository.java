@@ -0,0 +1,297 @@
+package scheduler.repository.memory;
+
+import scheduler.model.Appointment;
+import scheduler.model.Reservation;
+import scheduler.repository.AppointmentRepository;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+class MemoryAppointmentRepository implements AppointmentRepository {
+
+    private static final Comparator<Appointment> KEYSET_ORDER =
+            Comparator.comparing(Appointment::getDate).thenComparingInt(Appointment::getAppointmentID);
+
+    private final MemoryStorage storage;
+
+    MemoryAppointmentRepository(MemoryStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public int nextId() {
+        return storage.appointmentIds.incrementAndGet();
+    }
+
+    @Override
+    public void save(Appointment appointment) throws SQLException {
+        storage.writeLock.lock();
+        try {
+            checkInsert(appointment.getAppointmentID(), appointment.getPatientUsername(),
+                    appointment.getCaregiverUsername(), appointment.getVaccineName());
+            insert(appointment);
+        } finally {
+            storage.writeLock.unlock();
+        }
+    }
+
+    // Same steps and outcomes as the SQL batch, with the write lock standing in for the transaction.
+    @Override
+    public Reservation reserve(Date date, String vaccineName, String patientUsername, int appointmentID,
+                               Integer holdID) throws SQLException {
+        storage.writeLock.lock();
+        try {
+            MemoryStorage.Slot slot = firstOpenSlot(date);
+            if (slot == null) {
+                return new Reservation(Reservation.Status.NO_CAREGIVER, -1, date, null, vaccineName);
+            }
+            String vaccineKey = MemoryStorage.key(vaccineName);
+            MemoryStorage.VaccineRow vaccine = storage.vaccines.get(vaccineKey);
+            if (holdID == null) {
+                if (vaccine == null || vaccine.doses <= 0) {
+                    return new Reservation(Reservation.Status.NO_DOSES, -1, date, null, vaccineName);
+                }
+            } else {
+                MemoryStorage.Hold hold = storage.holds.get(holdID);
+                if (hold == null || !hold.vaccineKey.equals(vaccineKey)
+                        || !hold.patientKey.equals(MemoryStorage.key(patientUsername))
+                        || hold.expiresAt <= System.currentTimeMillis()) {
+                    return new Reservation(Reservation.Status.HOLD_EXPIRED, -1, date, null, vaccineName);
+                }
+            }
+            try {
+                checkInsert(appointmentID, patientUsername, slot.caregiverUsername, vaccineName);
+            } catch (SQLException e) {
+                throw new SQLException("Failed to reserve an appointment.", e);
+            }
+
+            if (holdID == null) {
+                vaccine.doses--;
+            } else {
+                storage.holds.remove(holdID);
+            }
+            slot.dosesLeft--;
+            insert(new Appointment.AppointmentBuilder(appointmentID, date, slot.caregiverUsername, patientUsername,
+                    vaccineName).build());
+            return new Reservation(Reservation.Status.RESERVED, appointmentID, date, slot.caregiverUsername, vaccineName);
+        } finally {
+            storage.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Appointment delete(int appointmentID, int backfillID) throws SQLException {
+        storage.writeLock.lock();
+        try {
+            Appointment appointment = storage.appointments.remove(appointmentID);
+            if (appointment == null) {
+                return null;
+            }
+            removeFromIndex(storage.appointmentsByPatient, appointment.getPatientUsername(), appointmentID);
+            removeFromIndex(storage.appointmentsByCaregiver, appointment.getCaregiverUsername(), appointmentID);
+            removeFromHistory(storage.patientHistory, appointment.getPatientUsername(), appointment);
+            removeFromHistory(storage.caregiverHistory, appointment.getCaregiverUsername(), appointment);
+            ConcurrentSkipListMap<String, MemoryStorage.Slot> day = storage.slots.get(appointment.getDate().toLocalDate());
+            MemoryStorage.Slot slot = day == null ? null : day.get(appointment.getCaregiverUsername());
+            if (slot != null) {
+                slot.dosesLeft++;
+            }
+            MemoryStorage.VaccineRow vaccine = storage.vaccines.get(MemoryStorage.key(appointment.getVaccineName()));
+            if (vaccine != null) {
+                vaccine.doses++;
+            }
+            if (backfillID < 0) {
+                return null;
+            }
+            try {
+                return bookFromWaitlist(appointment.getDate(), appointment.getCaregiverUsername(), backfillID);
+            } catch (SQLException e) {
+                throw new SQLException("Failed to cancel appointment from the database.", e);
+            }
+        } finally {
+            storage.writeLock.unlock();
+        }
+    }
+
+    // Same steps as JdbcAppointmentRepository.BOOK_FROM_WAITLIST; the caller holds the write lock.
+    Appointment bookFromWaitlist(Date date, String preferredCaregiver, int appointmentID) throws SQLException {
+        ConcurrentLinkedQueue<MemoryStorage.WaitlistEntry> queue = storage.waitlist.get(date.toLocalDate());
+        if (queue == null) {
+            return null;
+        }
+        ConcurrentSkipListMap<String, MemoryStorage.Slot> day = storage.slots.get(date.toLocalDate());
+        MemoryStorage.Slot slot = day == null || preferredCaregiver == null ? null : day.get(preferredCaregiver);
+        if (slot == null || slot.dosesLeft <= 0) {
+            slot = firstOpenSlot(date);
+        }
+        if (slot == null) {
+            return null;
+        }
+        Iterator<MemoryStorage.WaitlistEntry> waiting = queue.iterator();
+        while (waiting.hasNext()) {
+            MemoryStorage.WaitlistEntry entry = waiting.next();
+            MemoryStorage.VaccineRow vaccine = storage.vaccines.get(MemoryStorage.key(entry.vaccineName));
+            if (vaccine == null || vaccine.doses <= 0) {
+                continue;
+            }
+            checkInsert(appointmentID, entry.patientUsername, slot.caregiverUsername, entry.vaccineName);
+            waiting.remove();
+            if (queue.isEmpty()) {
+                storage.waitlist.remove(date.toLocalDate(), queue);
+            }
+            vaccine.doses--;
+            slot.dosesLeft--;
+            Appointment appointment = new Appointment.AppointmentBuilder(appointmentID, date, slot.caregiverUsername,
+                    entry.patientUsername, entry.vaccineName).build();
+            insert(appointment);
+            return appointment;
+        }
+        return null;
+    }
+
+    @Override
+    public Appointment findById(int appointmentID) {
+        return storage.appointments.get(appointmentID);
+    }
+
+    @Override
+    public List<Appointment> findByPatient(String patientUsername) {
+        return lookup(storage.appointmentsByPatient, patientUsername);
+    }
+
+    @Override
+    public List<Appointment> findByCaregiver(String caregiverUsername) {
+        return lookup(storage.appointmentsByCaregiver, caregiverUsername);
+    }
+
+    @Override
+    public List<Appointment> findPageByPatient(String patientUsername, Date from, Date to, Appointment after,
+                                               int offset, int limit) {
+        return page(storage.patientHistory.get(MemoryStorage.key(patientUsername)), from, to, after, offset, limit);
+    }
+
+    @Override
+    public List<Appointment> findPageByCaregiver(String caregiverUsername, Date from, Date to, Appointment after,
+                                                 int offset, int limit) {
+        return page(storage.caregiverHistory.get(MemoryStorage.key(caregiverUsername)), from, to, after, offset,
+                limit);
+    }
+
+    @Override
+    public int findLatestIdForPatient(String patientUsername) {
+        ConcurrentSkipListSet<Integer> ids = storage.appointmentsByPatient.get(MemoryStorage.key(patientUsername));
+        if (ids == null) {
+            return -1;
+        }
+        Iterator<Integer> descending = ids.descendingIterator();
+        return descending.hasNext() ? descending.next() : -1;
+    }
+
+    private MemoryStorage.Slot firstOpenSlot(Date date) {
+        ConcurrentSkipListMap<String, MemoryStorage.Slot> day = storage.slots.get(date.toLocalDate());
+        if (day != null) {
+            for (MemoryStorage.Slot slot : day.values()) {
+                if (slot.dosesLeft > 0) {
+                    return slot;
+                }
+            }
+        }
+        return null;
+    }
+
+    // the primary and foreign keys of the Appointments table
+    private void checkInsert(int appointmentID, String patientUsername, String caregiverUsername, String vaccineName)
+            throws SQLException {
+        if (storage.appointments.containsKey(appointmentID)) {
+            throw new SQLException("Violation of PRIMARY KEY constraint on Appointments: " + appointmentID, "23000");
+        }
+        if (!storage.patients.containsKey(MemoryStorage.key(patientUsername))
+                || !storage.caregivers.containsKey(MemoryStorage.key(caregiverUsername))
+                || !storage.vaccines.containsKey(MemoryStorage.key(vaccineName))) {
+            throw new SQLException("FOREIGN KEY violation on Appointments " + appointmentID, "23000");
+        }
+    }
+
+    private void insert(Appointment appointment) {
+        storage.appointments.put(appointment.getAppointmentID(), appointment);
+        storage.appointmentsByPatient.computeIfAbsent(MemoryStorage.key(appointment.getPatientUsername()),
+                k -> new ConcurrentSkipListSet<>()).add(appointment.getAppointmentID());
+        storage.appointmentsByCaregiver.computeIfAbsent(MemoryStorage.key(appointment.getCaregiverUsername()),
+                k -> new ConcurrentSkipListSet<>()).add(appointment.getAppointmentID());
+        storage.patientHistory.computeIfAbsent(MemoryStorage.key(appointment.getPatientUsername()),
+                k -> new ConcurrentSkipListSet<>(KEYSET_ORDER)).add(appointment);
+        storage.caregiverHistory.computeIfAbsent(MemoryStorage.key(appointment.getCaregiverUsername()),
+                k -> new ConcurrentSkipListSet<>(KEYSET_ORDER)).add(appointment);
+    }
+
+    private static void removeFromIndex(ConcurrentHashMap<String, ConcurrentSkipListSet<Integer>> index,
+                                        String username, int appointmentID) {
+        ConcurrentSkipListSet<Integer> ids = index.get(MemoryStorage.key(username));
+        if (ids != null) {
+            ids.remove(appointmentID);
+        }
+    }
+
+    private static void removeFromHistory(ConcurrentHashMap<String, ConcurrentSkipListSet<Appointment>> history,
+                                          String username, Appointment appointment) {
+        ConcurrentSkipListSet<Appointment> appointments = history.get(MemoryStorage.key(username));
+        if (appointments != null) {
+            appointments.remove(appointment);
+        }
+    }
+
+    // Seeks to whichever of after and from comes later and walks forward, like the index seek the
+    // SQL query does.
+    private static List<Appointment> page(ConcurrentSkipListSet<Appointment> history, Date from, Date to,
+                                          Appointment after, int offset, int limit) {
+        List<Appointment> page = new ArrayList<>();
+        if (history == null) {
+            return page;
+        }
+        NavigableSet<Appointment> rest = history;
+        if (from != null) {
+            // sorts before every appointment on the from date
+            Appointment start = new Appointment.AppointmentBuilder(Integer.MIN_VALUE, from, null, null, null).build();
+            rest = rest.tailSet(start, true);
+        }
+        if (after != null && (from == null || !after.getDate().before(from))) {
+            rest = history.tailSet(after, false);
+        }
+        int skipped = 0;
+        for (Appointment appointment : rest) {
+            if (page.size() >= limit || (to != null && appointment.getDate().after(to))) {
+                break;
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                page.add(appointment);
+            }
+        }
+        return page;
+    }
+
+    private List<Appointment> lookup(ConcurrentHashMap<String, ConcurrentSkipListSet<Integer>> index, String username) {
+        List<Appointment> appointments = new ArrayList<>();
+        ConcurrentSkipListSet<Integer> ids = index.get(MemoryStorage.key(username));
+        if (ids != null) {
+            for (Integer id : ids) {
+                Appointment appointment = storage.appointments.get(id);
+                // an ID can briefly outlive its row while a cancel is in progress
+                if (appointment != null) {
+                    appointments.add(appointment);
+                }
+            }
+        }
+        return appointments;
+    }
+}
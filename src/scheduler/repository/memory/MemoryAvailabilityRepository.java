@@ -0,0 +1,124 @@
+package scheduler.repository.memory;
+
+import scheduler.model.Appointment;
+import scheduler.model.Availability;
+import scheduler.repository.AvailabilityRepository;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+class MemoryAvailabilityRepository implements AvailabilityRepository {
+
+    private final MemoryStorage storage;
+
+    MemoryAvailabilityRepository(MemoryStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public List<Availability> saveAll(List<Availability> availabilities, int batchSize) throws SQLException {
+        List<Availability> inserted = new ArrayList<>();
+        storage.writeLock.lock();
+        try {
+            for (Availability availability : availabilities) {
+                if (!storage.caregivers.containsKey(MemoryStorage.key(availability.getCaregiverUsername()))) {
+                    throw new SQLException("Failed to upload availability.", new SQLException(
+                            "FOREIGN KEY violation: unknown caregiver " + availability.getCaregiverUsername(), "23000"));
+                }
+            }
+            for (Availability availability : availabilities) {
+                ConcurrentSkipListMap<String, MemoryStorage.Slot> day = storage.slots.computeIfAbsent(
+                        availability.getDate().toLocalDate(), d -> new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER));
+                MemoryStorage.Slot slot = new MemoryStorage.Slot(availability.getCaregiverUsername(), availability.getDoses());
+                if (day.putIfAbsent(availability.getCaregiverUsername(), slot) == null) {
+                    inserted.add(availability);
+                }
+            }
+            return inserted;
+        } finally {
+            storage.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public SortedMap<String, Integer> findOpenSlots(Date date) {
+        TreeMap<String, Integer> result = new TreeMap<>();
+        ConcurrentSkipListMap<String, MemoryStorage.Slot> day = storage.slots.get(date.toLocalDate());
+        if (day != null) {
+            for (MemoryStorage.Slot slot : day.values()) {
+                int dosesLeft = slot.dosesLeft;
+                if (dosesLeft > 0) {
+                    result.put(slot.caregiverUsername, dosesLeft);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public SortedMap<LocalDate, SortedMap<String, Integer>> findOpenSlots(Date start, Date end) {
+        TreeMap<LocalDate, SortedMap<String, Integer>> result = new TreeMap<>();
+        for (Map.Entry<LocalDate, ConcurrentSkipListMap<String, MemoryStorage.Slot>> day :
+                storage.slots.subMap(start.toLocalDate(), true, end.toLocalDate(), true).entrySet()) {
+            TreeMap<String, Integer> caregivers = new TreeMap<>();
+            for (MemoryStorage.Slot slot : day.getValue().values()) {
+                int dosesLeft = slot.dosesLeft;
+                if (dosesLeft > 0) {
+                    caregivers.put(slot.caregiverUsername, dosesLeft);
+                }
+            }
+            if (!caregivers.isEmpty()) {
+                result.put(day.getKey(), caregivers);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int rebuildCapacity(Date start, Date end) {
+        storage.writeLock.lock();
+        try {
+            Map<LocalDate, Map<String, Integer>> booked = new HashMap<>();
+            for (Appointment appointment : storage.appointments.values()) {
+                LocalDate date = appointment.getDate().toLocalDate();
+                if (!date.isBefore(start.toLocalDate()) && !date.isAfter(end.toLocalDate())) {
+                    booked.computeIfAbsent(date, d -> new HashMap<>())
+                            .merge(MemoryStorage.key(appointment.getCaregiverUsername()), 1, Integer::sum);
+                }
+            }
+            int corrected = 0;
+            for (Map.Entry<LocalDate, ConcurrentSkipListMap<String, MemoryStorage.Slot>> day :
+                    storage.slots.subMap(start.toLocalDate(), true, end.toLocalDate(), true).entrySet()) {
+                Map<String, Integer> bookedOnDay = booked.getOrDefault(day.getKey(), Collections.emptyMap());
+                for (MemoryStorage.Slot slot : day.getValue().values()) {
+                    int taken = bookedOnDay.getOrDefault(MemoryStorage.key(slot.caregiverUsername), 0);
+                    int dosesLeft = Math.max(0, slot.capacity - taken);
+                    if (slot.dosesLeft != dosesLeft) {
+                        slot.dosesLeft = dosesLeft;
+                        corrected++;
+                    }
+                }
+            }
+            return corrected;
+        } finally {
+            storage.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Date[] findDateBounds() {
+        if (storage.slots.isEmpty()) {
+            return null;
+        }
+        return new Date[]{Date.valueOf(storage.slots.firstKey()), Date.valueOf(storage.slots.lastKey())};
+    }
+}
@@ -0,0 +1,43 @@
+package scheduler.repository.memory;
+
+import scheduler.model.Caregiver;
+import scheduler.repository.CaregiverRepository;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+class MemoryCaregiverRepository implements CaregiverRepository {
+
+    private final Accounts<Caregiver> accounts;
+
+    MemoryCaregiverRepository(MemoryStorage storage) {
+        this.accounts = new Accounts<>(storage, storage.caregivers, Caregiver::getUsername, "Caregivers");
+    }
+
+    @Override
+    public void save(Caregiver caregiver) throws SQLException {
+        accounts.save(caregiver);
+    }
+
+    @Override
+    public void saveAll(List<Caregiver> caregivers, int batchSize) throws SQLException {
+        accounts.saveAll(caregivers);
+    }
+
+    @Override
+    public Caregiver find(String username) {
+        return accounts.find(username);
+    }
+
+    @Override
+    public boolean exists(String username) {
+        return accounts.exists(username);
+    }
+
+    @Override
+    public Set<String> findExistingUsernames(Collection<String> usernames) {
+        return accounts.findExistingUsernames(usernames);
+    }
+}
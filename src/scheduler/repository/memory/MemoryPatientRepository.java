@@ -0,0 +1,43 @@
+package scheduler.repository.memory;
+
+import scheduler.model.Patient;
+import scheduler.repository.PatientRepository;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+class MemoryPatientRepository implements PatientRepository {
+
+    private final Accounts<Patient> accounts;
+
+    MemoryPatientRepository(MemoryStorage storage) {
+        this.accounts = new Accounts<>(storage, storage.patients, Patient::getUsername, "Patients");
+    }
+
+    @Override
+    public void save(Patient patient) throws SQLException {
+        accounts.save(patient);
+    }
+
+    @Override
+    public void saveAll(List<Patient> patients, int batchSize) throws SQLException {
+        accounts.saveAll(patients);
+    }
+
+    @Override
+    public Patient find(String username) {
+        return accounts.find(username);
+    }
+
+    @Override
+    public boolean exists(String username) {
+        return accounts.exists(username);
+    }
+
+    @Override
+    public Set<String> findExistingUsernames(Collection<String> usernames) {
+        return accounts.findExistingUsernames(usernames);
+    }
+}
@@ -0,0 +1,143 @@
+package scheduler.repository.memory;
+
+import scheduler.model.Appointment;
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+import scheduler.repository.AppointmentRepository;
+import scheduler.repository.AvailabilityRepository;
+import scheduler.repository.CaregiverRepository;
+import scheduler.repository.PatientRepository;
+import scheduler.repository.Storage;
+import scheduler.repository.VaccineRepository;
+import scheduler.repository.WaitlistRepository;
+
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Process-local storage engine with the same semantics as the SQL schema: usernames and vaccine
+// names are case-insensitive keys, foreign keys are checked, and reserve/cancel/holds change
+// several tables atomically. Rows live in concurrent hash maps, with sorted indexes for the range
+// and ordered lookups (date -> caregiver slots, patient/caregiver -> appointment IDs).
+//
+// Every write transaction runs under one lock and validates everything before changing anything,
+// so a failed transaction leaves no trace; reads never take the lock. At memory speed the single
+// writer is far from being the bottleneck.
+public class MemoryStorage implements Storage {
+
+    final ReentrantLock writeLock = new ReentrantLock();
+
+    final ConcurrentHashMap<String, Patient> patients = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<String, Caregiver> caregivers = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<String, VaccineRow> vaccines = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<Integer, Hold> holds = new ConcurrentHashMap<>();
+    // date -> caregiver -> slot; caregivers are ordered the way the database collation orders them
+    final ConcurrentSkipListMap<LocalDate, ConcurrentSkipListMap<String, Slot>> slots = new ConcurrentSkipListMap<>();
+    final ConcurrentHashMap<Integer, Appointment> appointments = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<String, ConcurrentSkipListSet<Integer>> appointmentsByPatient = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<String, ConcurrentSkipListSet<Integer>> appointmentsByCaregiver = new ConcurrentHashMap<>();
+    // the same, in (Date, AppointmentID) order, for paging through a user's history
+    final ConcurrentHashMap<String, ConcurrentSkipListSet<Appointment>> patientHistory = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<String, ConcurrentSkipListSet<Appointment>> caregiverHistory = new ConcurrentHashMap<>();
+    // date -> patients waiting for it, in arrival order
+    final ConcurrentSkipListMap<LocalDate, ConcurrentLinkedQueue<WaitlistEntry>> waitlist = new ConcurrentSkipListMap<>();
+
+    final AtomicInteger appointmentIds = new AtomicInteger();
+    final AtomicInteger holdIds = new AtomicInteger();
+
+    private final PatientRepository patientRepository = new MemoryPatientRepository(this);
+    private final CaregiverRepository caregiverRepository = new MemoryCaregiverRepository(this);
+    private final AvailabilityRepository availabilityRepository = new MemoryAvailabilityRepository(this);
+    private final VaccineRepository vaccineRepository = new MemoryVaccineRepository(this);
+    private final MemoryAppointmentRepository appointmentRepository = new MemoryAppointmentRepository(this);
+    private final WaitlistRepository waitlistRepository = new MemoryWaitlistRepository(this, appointmentRepository);
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public PatientRepository patients() {
+        return patientRepository;
+    }
+
+    @Override
+    public CaregiverRepository caregivers() {
+        return caregiverRepository;
+    }
+
+    @Override
+    public AvailabilityRepository availabilities() {
+        return availabilityRepository;
+    }
+
+    @Override
+    public VaccineRepository vaccines() {
+        return vaccineRepository;
+    }
+
+    @Override
+    public AppointmentRepository appointments() {
+        return appointmentRepository;
+    }
+
+    @Override
+    public WaitlistRepository waitlist() {
+        return waitlistRepository;
+    }
+
+    // usernames and vaccine names compare case-insensitively, like the database collation
+    static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    static class VaccineRow {
+        final String name;
+        volatile int doses;
+
+        VaccineRow(String name, int doses) {
+            this.name = name;
+            this.doses = doses;
+        }
+    }
+
+    static class Slot {
+        final String caregiverUsername;
+        final int capacity;
+        volatile int dosesLeft;
+
+        Slot(String caregiverUsername, int capacity) {
+            this.caregiverUsername = caregiverUsername;
+            this.capacity = capacity;
+            this.dosesLeft = capacity;
+        }
+    }
+
+    static class WaitlistEntry {
+        final String vaccineName;
+        final String patientUsername;
+
+        WaitlistEntry(String vaccineName, String patientUsername) {
+            this.vaccineName = vaccineName;
+            this.patientUsername = patientUsername;
+        }
+    }
+
+    static class Hold {
+        final String vaccineKey;
+        final String patientKey;
+        final long expiresAt;
+
+        Hold(String vaccineKey, String patientKey, long expiresAt) {
+            this.vaccineKey = vaccineKey;
+            this.patientKey = patientKey;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package scheduler.repository.memory;
+
+import scheduler.model.Vaccine;
+import scheduler.repository.VaccineRepository;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+class MemoryVaccineRepository implements VaccineRepository {
+
+    private final MemoryStorage storage;
+
+    MemoryVaccineRepository(MemoryStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public void save(Vaccine vaccine) throws SQLException {
+        storage.writeLock.lock();
+        try {
+            MemoryStorage.VaccineRow row = new MemoryStorage.VaccineRow(vaccine.getVaccineName(), vaccine.getAvailableDoses());
+            if (storage.vaccines.putIfAbsent(MemoryStorage.key(vaccine.getVaccineName()), row) != null) {
+                throw new SQLException("Violation of PRIMARY KEY constraint on Vaccines: " + vaccine.getVaccineName(),
+                        "23000");
+            }
+        } finally {
+            storage.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Vaccine find(String vaccineName) throws SQLException {
+        MemoryStorage.VaccineRow row = storage.vaccines.get(MemoryStorage.key(vaccineName));
+        return row == null ? null : new Vaccine.VaccineBuilder(vaccineName, row.doses).build();
+    }
+
+    @Override
+    public SortedMap<String, Integer> findAllDoses() {
+        TreeMap<String, Integer> result = new TreeMap<>();
+        for (MemoryStorage.VaccineRow row : storage.vaccines.values()) {
+            result.put(row.name, row.doses);
+        }
+        return result;
+    }
+
+    @Override
+    public int adjustDoses(String vaccineName, int delta) {
+        storage.writeLock.lock();
+        try {
+            MemoryStorage.VaccineRow row = storage.vaccines.get(MemoryStorage.key(vaccineName));
+            if (row == null || row.doses + delta < 0) {
+                return -1;
+            }
+            row.doses += delta;
+            return row.doses;
+        } finally {
+            storage.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int nextHoldId() {
+        return storage.holdIds.incrementAndGet();
+    }
+
+    @Override
+    public boolean placeHold(int holdID, String vaccineName, String patientUsername, long ttlMillis)
+            throws SQLException {
+        storage.writeLock.lock();
+        try {
+            String patientKey = MemoryStorage.key(patientUsername);
+            if (!storage.patients.containsKey(patientKey) || storage.holds.containsKey(holdID)) {
+                throw new SQLException("Failed to place a hold on " + vaccineName + ".");
+            }
+            MemoryStorage.VaccineRow row = storage.vaccines.get(MemoryStorage.key(vaccineName));
+            if (row == null || row.doses <= 0) {
+                return false;
+            }
+            row.doses--;
+            storage.holds.put(holdID, new MemoryStorage.Hold(MemoryStorage.key(vaccineName), patientKey,
+                    System.currentTimeMillis() + ttlMillis));
+            return true;
+        } finally {
+            storage.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean releaseHold(int holdID) {
+        storage.writeLock.lock();
+        try {
+            MemoryStorage.Hold hold = storage.holds.remove(holdID);
+            if (hold == null) {
+                return false;
+            }
+            returnDose(hold);
+            return true;
+        } finally {
+            storage.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int releaseExpiredHolds() {
+        long now = System.currentTimeMillis();
+        int released = 0;
+        storage.writeLock.lock();
+        try {
+            Iterator<Map.Entry<Integer, MemoryStorage.Hold>> it = storage.holds.entrySet().iterator();
+            while (it.hasNext()) {
+                MemoryStorage.Hold hold = it.next().getValue();
+                if (hold.expiresAt <= now) {
+                    it.remove();
+                    returnDose(hold);
+                    released++;
+                }
+            }
+        } finally {
+            storage.writeLock.unlock();
+        }
+        return released;
+    }
+
+    private void returnDose(MemoryStorage.Hold hold) {
+        MemoryStorage.VaccineRow row = storage.vaccines.get(hold.vaccineKey);
+        if (row != null) {
+            row.doses++;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package scheduler.repository.memory;
+
+import scheduler.model.Appointment;
+import scheduler.repository.WaitlistRepository;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+class MemoryWaitlistRepository implements WaitlistRepository {
+
+    private final MemoryStorage storage;
+    private final MemoryAppointmentRepository appointments;
+
+    MemoryWaitlistRepository(MemoryStorage storage, MemoryAppointmentRepository appointments) {
+        this.storage = storage;
+        this.appointments = appointments;
+    }
+
+    @Override
+    public int join(Date date, String vaccineName, String patientUsername) throws SQLException {
+        storage.writeLock.lock();
+        try {
+            if (!storage.patients.containsKey(MemoryStorage.key(patientUsername))
+                    || !storage.vaccines.containsKey(MemoryStorage.key(vaccineName))) {
+                throw new SQLException("Failed to join the waitlist.", new SQLException(
+                        "FOREIGN KEY violation on Waitlist for " + patientUsername, "23000"));
+            }
+            ConcurrentLinkedQueue<MemoryStorage.WaitlistEntry> queue =
+                    storage.waitlist.computeIfAbsent(date.toLocalDate(), d -> new ConcurrentLinkedQueue<>());
+            for (MemoryStorage.WaitlistEntry entry : queue) {
+                if (MemoryStorage.key(entry.patientUsername).equals(MemoryStorage.key(patientUsername))) {
+                    return -1;
+                }
+            }
+            queue.add(new MemoryStorage.WaitlistEntry(vaccineName, patientUsername));
+            return queue.size();
+        } finally {
+            storage.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Appointment bookNext(Date date, int appointmentID) throws SQLException {
+        storage.writeLock.lock();
+        try {
+            return appointments.bookFromWaitlist(date, null, appointmentID);
+        } catch (SQLException e) {
+            throw new SQLException("Failed to book from the waitlist.", e);
+        } finally {
+            storage.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Date> findWaitingDates() {
+        List<Date> dates = new ArrayList<>();
+        for (Map.Entry<LocalDate, ConcurrentLinkedQueue<MemoryStorage.WaitlistEntry>> day : storage.waitlist.entrySet()) {
+            if (!day.getValue().isEmpty()) {
+                dates.add(Date.valueOf(day.getKey()));
+            }
+        }
+        return dates;
+    }
+
+    @Override
+    public boolean isWaiting(Date date) {
+        ConcurrentLinkedQueue<MemoryStorage.WaitlistEntry> queue = storage.waitlist.get(date.toLocalDate());
+        return queue != null && !queue.isEmpty();
+    }
+}
@@ -0,0 +1,338 @@
+package scheduler.service;
+
+import scheduler.db.ConnectionManager;
+import scheduler.repository.Repositories;
+import scheduler.util.Config;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process index of caregiver capacity per date (date -> caregiver -> doses left), loaded lazily
+// from the availability repository the first time a date is searched and then kept up to date in place by
+// upload_availability, reserve and cancel. Entries expire after a TTL so changes made by other
+// processes are picked up eventually; the TTL is the bound on staleness. Loads may come from a read
+// replica (see ConnectionManager), which can be up to replicaLagMillis behind: a load that starts
+// that soon after a change was applied here may not include it, so it is served but not cached.
+public class AvailabilityIndex {
+
+    private static final AvailabilityIndex instance = new AvailabilityIndex(
+            Config.getLong("AvailabilityIndexTtlMs", 30000),
+            Config.getInt("AvailabilityIndexMaxDates", 366),
+            ConnectionManager.getReplicaLagMillis());
+
+    private final long ttlMillis;
+    private final int maxDates;
+    private final long replicaLagMillis;
+
+    private final ConcurrentHashMap<LocalDate, Entry> entries = new ConcurrentHashMap<>();
+    // date -> number of changes applied to it; a load is only cached if the count didn't move while
+    // it ran. clear() moves the epoch instead, for every date at once.
+    private final ConcurrentHashMap<LocalDate, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    // date -> when a change to it was last applied, kept for replicaLagMillis
+    private final ConcurrentHashMap<LocalDate, Long> recentChanges = new ConcurrentHashMap<>();
+
+    // metrics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong discardedLoads = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong totalServedAgeMillis = new AtomicLong();
+    private final AtomicLong maxServedAgeMillis = new AtomicLong();
+
+    public AvailabilityIndex(long ttlMillis, int maxDates) {
+        this(ttlMillis, maxDates, 0);
+    }
+
+    public AvailabilityIndex(long ttlMillis, int maxDates, long replicaLagMillis) {
+        this.ttlMillis = ttlMillis;
+        this.maxDates = maxDates;
+        this.replicaLagMillis = replicaLagMillis;
+    }
+
+    public static AvailabilityIndex getInstance() {
+        return instance;
+    }
+
+    // Caregivers with at least one dose left on the date, ordered by username.
+    public SortedMap<String, Integer> lookup(Date date) throws SQLException {
+        LocalDate key = date.toLocalDate();
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            long age = now - entry.loadedAt;
+            if (age < ttlMillis) {
+                hits.incrementAndGet();
+                recordServedAge(age);
+                return entry.snapshot();
+            }
+            expired.incrementAndGet();
+        }
+        misses.incrementAndGet();
+
+        LoadToken token = new LoadToken(key);
+        TreeMap<String, Integer> loaded = load(date);
+        cache(key, token, loaded, now);
+        recordServedAge(0);
+        return Collections.unmodifiableSortedMap(loaded);
+    }
+
+    // Caregivers with at least one dose left on each date from start to end, ordered by date; dates
+    // without any are left out. Dates that are cached and fresh are served from the index; the span
+    // from the first to the last date that isn't is read with a single range query and cached.
+    public SortedMap<LocalDate, SortedMap<String, Integer>> lookupRange(Date start, Date end) throws SQLException {
+        long now = System.currentTimeMillis();
+        TreeMap<LocalDate, SortedMap<String, Integer>> result = new TreeMap<>();
+        LocalDate missFrom = null;
+        LocalDate missTo = null;
+        for (LocalDate day = start.toLocalDate(); !day.isAfter(end.toLocalDate()); day = day.plusDays(1)) {
+            Entry entry = entries.get(day);
+            if (entry != null && now - entry.loadedAt < ttlMillis) {
+                hits.incrementAndGet();
+                recordServedAge(now - entry.loadedAt);
+                SortedMap<String, Integer> caregivers = entry.snapshot();
+                if (!caregivers.isEmpty()) {
+                    result.put(day, caregivers);
+                }
+                continue;
+            }
+            if (entry != null) {
+                expired.incrementAndGet();
+            }
+            misses.incrementAndGet();
+            if (missFrom == null) {
+                missFrom = day;
+            }
+            missTo = day;
+        }
+        if (missFrom == null) {
+            return result;
+        }
+
+        Map<LocalDate, LoadToken> tokens = new HashMap<>();
+        for (LocalDate day = missFrom; !day.isAfter(missTo); day = day.plusDays(1)) {
+            tokens.put(day, new LoadToken(day));
+        }
+        SortedMap<LocalDate, SortedMap<String, Integer>> loaded =
+                Repositories.availabilities().findOpenSlots(Date.valueOf(missFrom), Date.valueOf(missTo));
+        // every date in the span was read, so fresh dates inside it are replaced by the newer read
+        for (Map.Entry<LocalDate, LoadToken> token : tokens.entrySet()) {
+            LocalDate day = token.getKey();
+            SortedMap<String, Integer> caregivers = loaded.get(day);
+            TreeMap<String, Integer> capacity = caregivers == null ? new TreeMap<>() : new TreeMap<>(caregivers);
+            cache(day, token.getValue(), capacity, now);
+            if (capacity.isEmpty()) {
+                result.remove(day);
+            } else {
+                result.put(day, Collections.unmodifiableSortedMap(capacity));
+            }
+        }
+        recordServedAge(0);
+        return result;
+    }
+
+    // upload_availability added a caregiver for the date
+    public void availabilityAdded(Date date, String caregiverUsername, int doses) {
+        apply(date.toLocalDate(), caregiverUsername, doses);
+    }
+
+    // reserve took one slot from the caregiver
+    public void slotTaken(Date date, String caregiverUsername) {
+        apply(date.toLocalDate(), caregiverUsername, -1);
+    }
+
+    // cancel gave one slot back to the caregiver
+    public void slotReleased(Date date, String caregiverUsername) {
+        apply(date.toLocalDate(), caregiverUsername, 1);
+    }
+
+    public void invalidate(Date date) {
+        LocalDate key = date.toLocalDate();
+        entries.compute(key, (k, entry) -> {
+            changed(k);
+            return null;
+        });
+    }
+
+    public void clear() {
+        epoch.incrementAndGet();
+        entries.clear();
+    }
+
+    // Callers apply a change only after it has been committed, so a load that started before the
+    // commit may or may not have seen it. The version moves in the same step that updates the
+    // entry (compute holds the date's bin), so a load still running when the change is applied
+    // finds the version moved and isn't cached, and one cached before gets the change applied to
+    // it like any other entry.
+    private void apply(LocalDate key, String caregiverUsername, int delta) {
+        entries.compute(key, (k, entry) -> {
+            changed(k);
+            if (entry != null) {
+                entry.apply(caregiverUsername, delta);
+                updates.incrementAndGet();
+            }
+            return entry;
+        });
+    }
+
+    // Keeps what a load read unless the date changed while it ran.
+    private void cache(LocalDate key, LoadToken token, TreeMap<String, Integer> loaded, long now) {
+        if (ttlMillis > 0 && entries.size() >= maxDates && !entries.containsKey(key)) {
+            evictOldest();
+        }
+        boolean[] cached = {false};
+        if (ttlMillis > 0) {
+            entries.compute(key, (k, entry) -> {
+                if (!isCacheable(k, token)) {
+                    return entry;
+                }
+                cached[0] = true;
+                return new Entry(new TreeMap<>(loaded), now);
+            });
+        }
+        if (!cached[0]) {
+            discardedLoads.incrementAndGet();
+        }
+    }
+
+    private void changed(LocalDate key) {
+        versions.merge(key, 1L, Long::sum);
+        if (replicaLagMillis > 0) {
+            long now = System.currentTimeMillis();
+            recentChanges.put(key, now);
+            if (recentChanges.size() > maxDates) {
+                recentChanges.values().removeIf(at -> now - at >= replicaLagMillis);
+            }
+        }
+    }
+
+    private boolean isCacheable(LocalDate key, LoadToken token) {
+        if (token.epoch != epoch.get() || token.version != versions.getOrDefault(key, 0L)) {
+            return false;
+        }
+        Long changedAt = recentChanges.get(key);
+        return changedAt == null || token.startedAt - changedAt >= replicaLagMillis;
+    }
+
+    private void evictOldest() {
+        LocalDate oldestKey = null;
+        long oldest = Long.MAX_VALUE;
+        for (Map.Entry<LocalDate, Entry> e : entries.entrySet()) {
+            if (e.getValue().loadedAt < oldest) {
+                oldest = e.getValue().loadedAt;
+                oldestKey = e.getKey();
+            }
+        }
+        if (oldestKey != null) {
+            entries.remove(oldestKey);
+        }
+    }
+
+    private void recordServedAge(long age) {
+        totalServedAgeMillis.addAndGet(age);
+        long max = maxServedAgeMillis.get();
+        while (age > max && !maxServedAgeMillis.compareAndSet(max, age)) {
+            max = maxServedAgeMillis.get();
+        }
+    }
+
+    private static TreeMap<String, Integer> load(Date date) throws SQLException {
+        return new TreeMap<>(Repositories.availabilities().findOpenSlots(date));
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    public long getDiscardedLoadCount() {
+        return discardedLoads.get();
+    }
+
+    public long getUpdateCount() {
+        return updates.get();
+    }
+
+    public double getAverageServedAgeMillis() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) totalServedAgeMillis.get() / total;
+    }
+
+    public long getMaxServedAgeMillis() {
+        return maxServedAgeMillis.get();
+    }
+
+    public int getCachedDates() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "AvailabilityIndex{" +
+                "dates=" + getCachedDates() +
+                ", hits=" + getHitCount() +
+                ", misses=" + getMissCount() +
+                ", hitRate=" + String.format("%.3f", getHitRate()) +
+                ", expired=" + getExpiredCount() +
+                ", discardedLoads=" + getDiscardedLoadCount() +
+                ", updates=" + getUpdateCount() +
+                ", avgServedAgeMs=" + String.format("%.1f", getAverageServedAgeMillis()) +
+                ", maxServedAgeMs=" + getMaxServedAgeMillis() +
+                '}';
+    }
+
+    // what a load saw of the date's changes when it started
+    private class LoadToken {
+        private final long startedAt = System.currentTimeMillis();
+        private final long epoch = AvailabilityIndex.this.epoch.get();
+        private final long version;
+
+        LoadToken(LocalDate key) {
+            version = versions.getOrDefault(key, 0L);
+        }
+    }
+
+    private static class Entry {
+        private final TreeMap<String, Integer> capacity;
+        private final long loadedAt;
+
+        Entry(TreeMap<String, Integer> capacity, long loadedAt) {
+            this.capacity = capacity;
+            this.loadedAt = loadedAt;
+        }
+
+        synchronized SortedMap<String, Integer> snapshot() {
+            return Collections.unmodifiableSortedMap(new TreeMap<>(capacity));
+        }
+
+        synchronized void apply(String caregiverUsername, int delta) {
+            int doses = capacity.getOrDefault(caregiverUsername, 0) + delta;
+            if (doses > 0) {
+                capacity.put(caregiverUsername, doses);
+            } else {
+                capacity.remove(caregiverUsername);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package scheduler.service;
+
+import scheduler.db.TransactionExecutor;
+import scheduler.model.Appointment;
+import scheduler.model.Reservation;
+import scheduler.model.Vaccine;
+import scheduler.repository.Repositories;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.Collections;
+
+public class ReservationService {
+
+    public static Reservation reserve(Date date, String vaccineName, String patientUsername) throws SQLException {
+        return reserve(date, vaccineName, patientUsername, null);
+    }
+
+    // Confirms a dose hold (see Vaccine.placeHold) into an appointment on the given date.
+    public static Reservation confirmHold(Date date, Vaccine.DoseHold hold) throws SQLException {
+        Reservation reservation = reserve(date, hold.getVaccineName(), hold.getPatientUsername(), hold.getHoldID());
+        if (reservation.isReserved()) {
+            Vaccine.holdConfirmed(hold.getHoldID());
+        }
+        return reservation;
+    }
+
+    private static Reservation reserve(Date date, String vaccineName, String patientUsername, Integer holdID)
+            throws SQLException {
+        // the ID normally comes from memory, so it costs nothing to allocate it up front; a failed
+        // attempt was rolled back, so a retry can use the same ID
+        int appointmentID = Appointment.getUniqueAppointmentID();
+        Reservation reservation = TransactionExecutor.getInstance().execute(() ->
+                Repositories.appointments().reserve(date, vaccineName, patientUsername, appointmentID, holdID));
+        if (reservation.isReserved()) {
+            AvailabilityIndex.getInstance().slotTaken(date, reservation.getCaregiverUsername());
+        }
+        return reservation;
+    }
+
+    public static void cancel(Appointment appointment) throws SQLException {
+        // only a date with patients waiting needs an ID for the backfill booking
+        boolean waiting = Repositories.waitlist().isWaiting(appointment.getDate());
+        int backfillID = waiting ? Appointment.getUniqueAppointmentID() : -1;
+        Appointment backfilled = TransactionExecutor.getInstance().execute(() -> appointment.removeFromDB(backfillID));
+        AvailabilityIndex.getInstance().slotReleased(appointment.getDate(), appointment.getCaregiverUsername());
+        if (backfilled != null) {
+            AvailabilityIndex.getInstance().slotTaken(backfilled.getDate(), backfilled.getCaregiverUsername());
+            WaitlistService.getInstance().booked(backfilled);
+        }
+        if (!waiting) {
+            // a patient who joined after the check missed the slot; the worker hands it to them
+            WaitlistService.getInstance().capacityAdded(Collections.singletonList(appointment.getDate()));
+        }
+    }
+}
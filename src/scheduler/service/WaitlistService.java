@@ -0,0 +1,116 @@
+package scheduler.service;
+
+import scheduler.model.Appointment;
+import scheduler.repository.Repositories;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Books waiting patients as capacity appears, so nobody has to keep retrying reserve. A cancelled
+// appointment's slot is handed to the head of the date's queue inside the cancel transaction (see
+// AppointmentRepository.delete); new availability and new doses are events handled here by a
+// single worker thread, which books waiting patients one transaction at a time until the date runs
+// out of slots or nobody waiting can get a dose. Patients are told about bookings made for them
+// the next time their session runs a command.
+public class WaitlistService {
+
+    private static final WaitlistService instance = new WaitlistService();
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "waitlist-worker");
+        t.setDaemon(true);
+        return t;
+    });
+    // patient -> bookings made from the waitlist that the patient hasn't seen yet
+    private final ConcurrentHashMap<String, Queue<Appointment>> notices = new ConcurrentHashMap<>();
+
+    public static WaitlistService getInstance() {
+        return instance;
+    }
+
+    // Returns the patient's position in the date's queue, or -1 if they are already in it. A slot
+    // that is open right now (e.g. the reserve before this lost a race for doses) is handed out
+    // straight away.
+    public int join(Date date, String vaccineName, String patientUsername) throws SQLException {
+        int position = Repositories.waitlist().join(date, vaccineName, patientUsername);
+        if (position > 0) {
+            worker.execute(() -> drain(date));
+        }
+        return position;
+    }
+
+    // upload_availability added slots on the dates
+    public void capacityAdded(List<Date> dates) {
+        if (!dates.isEmpty()) {
+            worker.execute(() -> drainWaiting(dates));
+        }
+    }
+
+    // add_doses may have unblocked patients waiting on any date
+    public void dosesAdded() {
+        worker.execute(() -> drainWaiting(null));
+    }
+
+    // Drains the given dates (all, if null) that have anyone waiting; dates without a queue are
+    // skipped so they don't use up appointment IDs.
+    private void drainWaiting(List<Date> dates) {
+        try {
+            for (Date date : Repositories.waitlist().findWaitingDates()) {
+                if (dates == null || dates.contains(date)) {
+                    drain(date);
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error occurred when reading the waitlist");
+            e.printStackTrace();
+        }
+    }
+
+    // a cancel handed its slot to a waiting patient
+    public void booked(Appointment appointment) {
+        notices.computeIfAbsent(key(appointment.getPatientUsername()), k -> new ConcurrentLinkedQueue<>())
+                .add(appointment);
+    }
+
+    // Bookings made for the patient since the last call.
+    public List<Appointment> takeNotices(String patientUsername) {
+        List<Appointment> taken = new ArrayList<>();
+        Queue<Appointment> queue = notices.get(key(patientUsername));
+        if (queue != null) {
+            Appointment appointment;
+            while ((appointment = queue.poll()) != null) {
+                taken.add(appointment);
+            }
+        }
+        return taken;
+    }
+
+    private void drain(Date date) {
+        try {
+            while (true) {
+                Appointment appointment = Repositories.waitlist().bookNext(date, Appointment.getUniqueAppointmentID());
+                if (appointment == null) {
+                    return;
+                }
+                AvailabilityIndex.getInstance().slotTaken(date, appointment.getCaregiverUsername());
+                booked(appointment);
+            }
+        } catch (SQLException e) {
+            // the next event for the date tries again
+            System.out.println("Error occurred when booking from the waitlist for " + date);
+            e.printStackTrace();
+        }
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+}
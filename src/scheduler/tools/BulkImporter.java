@@ -0,0 +1,259 @@
+package scheduler.tools;
+
+import scheduler.model.Availability;
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+import scheduler.util.Util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+// Bulk import of patients, caregivers and availability from a CSV file, one record per line:
+//
+//   patient,<username>,<password>
+//   caregiver,<username>,<password>
+//   availability,<caregiver username>,<yyyy-mm-dd>[,<doses>]
+//
+// Blank lines and lines starting with # are ignored. Usernames that already exist (in the file or
+// in the database) are skipped, passwords are hashed in parallel on all cores, and each table is
+// written in batched transactions.
+//
+// Usage: BulkImporter <file.csv> [--batch-size n] [--threads n]
+public class BulkImporter {
+
+    private final int batchSize;
+    private final int threads;
+
+    private final Map<String, Account> patients = new LinkedHashMap<>();
+    private final Map<String, Account> caregivers = new LinkedHashMap<>();
+    private final List<Availability> availabilities = new ArrayList<>();
+    private int rejected = 0;
+
+    public BulkImporter(int batchSize, int threads) {
+        this.batchSize = batchSize;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: BulkImporter <file.csv> [--batch-size n] [--threads n]");
+            return;
+        }
+        int batchSize = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 1; i < args.length; i += 2) {
+                if (args[i].equals("--batch-size") && i + 1 < args.length) {
+                    batchSize = Integer.parseInt(args[i + 1]);
+                } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[i + 1]);
+                } else {
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Please enter a valid number!");
+            return;
+        }
+        if (batchSize <= 0 || threads <= 0) {
+            System.out.println("Batch size and threads must be positive!");
+            return;
+        }
+
+        BulkImporter importer = new BulkImporter(batchSize, threads);
+        try {
+            importer.run(args[0]);
+        } catch (IOException e) {
+            System.out.println("Failed to read " + args[0] + ": " + e.getMessage());
+        } catch (SQLException e) {
+            System.out.println("Import failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    public void run(String file) throws IOException, SQLException {
+        long start = System.nanoTime();
+        read(file);
+        report("read", patients.size() + caregivers.size() + availabilities.size(), start);
+
+        long phase = System.nanoTime();
+        dropExisting();
+        report("lookup", patients.size() + caregivers.size(), phase);
+
+        phase = System.nanoTime();
+        hashPasswords();
+        report("hash", patients.size() + caregivers.size(), phase);
+
+        phase = System.nanoTime();
+        List<Patient> newPatients = new ArrayList<>();
+        for (Account account : patients.values()) {
+            newPatients.add(new Patient.PatientBuilder(account.username, account.salt, account.hash).build());
+        }
+        Patient.saveAllToDB(newPatients, batchSize);
+        report("patients", newPatients.size(), phase);
+
+        phase = System.nanoTime();
+        List<Caregiver> newCaregivers = new ArrayList<>();
+        for (Account account : caregivers.values()) {
+            newCaregivers.add(new Caregiver.CaregiverBuilder(account.username, account.salt, account.hash).build());
+        }
+        Caregiver.saveAllToDB(newCaregivers, batchSize);
+        report("caregivers", newCaregivers.size(), phase);
+
+        phase = System.nanoTime();
+        List<Availability> inserted = Availability.saveAllToDB(availabilities, batchSize);
+        report("availabilities", inserted.size(), phase);
+
+        int total = newPatients.size() + newCaregivers.size() + inserted.size();
+        System.out.println("Imported " + newPatients.size() + " patients, " + newCaregivers.size() +
+                " caregivers and " + inserted.size() + " availabilities (" +
+                (availabilities.size() - inserted.size()) + " availabilities already existed, " +
+                rejected + " lines rejected).");
+        report("total", total, start);
+    }
+
+    private void read(String file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",", -1);
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = fields[i].trim();
+                }
+                if (!parse(fields)) {
+                    System.out.println("Skipping line " + lineNumber + ": " + line);
+                    rejected++;
+                }
+            }
+        }
+    }
+
+    private boolean parse(String[] fields) {
+        String type = fields[0].toLowerCase(Locale.ROOT);
+        if ((type.equals("patient") || type.equals("caregiver")) && fields.length == 3) {
+            if (fields[1].isEmpty() || fields[2].isEmpty()) {
+                return false;
+            }
+            Map<String, Account> accounts = type.equals("patient") ? patients : caregivers;
+            // usernames are compared case-insensitively, like the database collation does
+            return accounts.putIfAbsent(key(fields[1]), new Account(fields[1], fields[2])) == null;
+        }
+        if (type.equals("availability") && (fields.length == 3 || fields.length == 4)) {
+            try {
+                int doses = fields.length == 4 ? Integer.parseInt(fields[3]) : 1;
+                availabilities.add(new Availability(Date.valueOf(fields[2]), fields[1], doses));
+                return true;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // Remove accounts that already exist and availability for caregivers that will not exist.
+    private void dropExisting() throws SQLException {
+        Set<String> existingPatients = keys(Patient.getExistingUsernames(originalNames(patients)));
+        patients.keySet().removeAll(existingPatients);
+
+        Set<String> referenced = new HashSet<>(originalNames(caregivers));
+        for (Availability availability : availabilities) {
+            referenced.add(availability.getCaregiverUsername());
+        }
+        Set<String> existingCaregivers = keys(Caregiver.getExistingUsernames(referenced));
+        Set<String> knownCaregivers = new HashSet<>(caregivers.keySet());
+        knownCaregivers.addAll(existingCaregivers);
+        caregivers.keySet().removeAll(existingCaregivers);
+        System.out.println("Skipping " + existingPatients.size() + " existing patients and " +
+                existingCaregivers.size() + " existing caregivers.");
+
+        int unknown = 0;
+        for (int i = availabilities.size() - 1; i >= 0; i--) {
+            if (!knownCaregivers.contains(key(availabilities.get(i).getCaregiverUsername()))) {
+                availabilities.remove(i);
+                unknown++;
+            }
+        }
+        if (unknown > 0) {
+            System.out.println("Skipping " + unknown + " availabilities for unknown caregivers.");
+            rejected += unknown;
+        }
+    }
+
+    private void hashPasswords() throws SQLException {
+        List<Account> accounts = new ArrayList<>(patients.values());
+        accounts.addAll(caregivers.values());
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> accounts.parallelStream().forEach(account -> {
+                account.salt = Util.generateSalt();
+                account.hash = Util.generateHash(account.password, account.salt);
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while hashing passwords.");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to hash passwords.", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void report(String phase, int rows, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        double rate = seconds > 0 ? rows / seconds : 0;
+        System.out.println(String.format("%-15s %8d rows %9.3f s %12.1f rows/s", phase, rows, seconds, rate));
+    }
+
+    private static List<String> originalNames(Map<String, Account> accounts) {
+        List<String> names = new ArrayList<>();
+        for (Account account : accounts.values()) {
+            names.add(account.username);
+        }
+        return names;
+    }
+
+    private static Set<String> keys(Set<String> usernames) {
+        Set<String> keys = new HashSet<>();
+        for (String username : usernames) {
+            keys.add(key(username));
+        }
+        return keys;
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private static class Account {
+        private final String username;
+        private final String password;
+        private byte[] salt;
+        private byte[] hash;
+
+        Account(String username, String password) {
+            this.username = username;
+            this.password = password;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package scheduler.tools;
+
+import scheduler.db.TransactionExecutor;
+import scheduler.repository.Repositories;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Recomputes the capacity summary (DosesLeft of every Availabilities row) from the uploaded
+// capacity and the appointments, for when it is suspected to have drifted, e.g. after rows were
+// edited by hand. The date range is cut into chunks of --chunk-days days that are rebuilt in
+// parallel, each in its own short transaction, so only one chunk's rows are locked at a time and
+// reservations elsewhere carry on. A chunk aborted as a deadlock victim or on a lock timeout is run
+// again (see TransactionExecutor). Without a range, every date with availability is rebuilt.
+//
+// Usage: CapacityRebuilder [<start date> <end date>] [--threads n] [--chunk-days n]
+public class CapacityRebuilder {
+
+    private final int threads;
+    private final int chunkDays;
+
+    public CapacityRebuilder(int threads, int chunkDays) {
+        this.threads = threads;
+        this.chunkDays = chunkDays;
+    }
+
+    public static void main(String[] args) {
+        Date start = null;
+        Date end = null;
+        int threads = 4;
+        int chunkDays = 7;
+        int i = 0;
+        try {
+            if (args.length >= 2 && !args[0].startsWith("--")) {
+                start = Date.valueOf(args[0]);
+                end = Date.valueOf(args[1]);
+                i = 2;
+            }
+            for (; i < args.length; i += 2) {
+                if (args[i].equals("--threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[i + 1]);
+                } else if (args[i].equals("--chunk-days") && i + 1 < args.length) {
+                    chunkDays = Integer.parseInt(args[i + 1]);
+                } else {
+                    System.out.println("Usage: CapacityRebuilder [<start date> <end date>] [--threads n] " +
+                            "[--chunk-days n]");
+                    return;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // also covers NumberFormatException
+            System.out.println("Please enter a valid date range and numbers!");
+            return;
+        }
+        if (threads <= 0 || chunkDays <= 0 || (start != null && end.before(start))) {
+            System.out.println("Please enter a valid date range and numbers!");
+            return;
+        }
+
+        try {
+            new CapacityRebuilder(threads, chunkDays).run(start, end);
+        } catch (SQLException e) {
+            System.out.println("Rebuild failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    // Returns the number of rows whose DosesLeft was corrected.
+    public int run(Date start, Date end) throws SQLException {
+        if (start == null) {
+            Date[] bounds = Repositories.availabilities().findDateBounds();
+            if (bounds == null) {
+                System.out.println("No availability to rebuild.");
+                return 0;
+            }
+            start = bounds[0];
+            end = bounds[1];
+        }
+        long began = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> chunks = new ArrayList<>();
+            LocalDate last = end.toLocalDate();
+            for (LocalDate from = start.toLocalDate(); !from.isAfter(last); from = from.plusDays(chunkDays)) {
+                LocalDate to = from.plusDays(chunkDays - 1).isAfter(last) ? last : from.plusDays(chunkDays - 1);
+                Date chunkStart = Date.valueOf(from);
+                Date chunkEnd = Date.valueOf(to);
+                chunks.add(executor.submit(() -> TransactionExecutor.getInstance().execute(() ->
+                        Repositories.availabilities().rebuildCapacity(chunkStart, chunkEnd))));
+            }
+            int corrected = 0;
+            for (Future<Integer> chunk : chunks) {
+                corrected += chunk.get();
+            }
+            System.out.println(String.format("Rebuilt capacity from %s to %s in %d chunk(s): %d row(s) corrected " +
+                    "in %.1f ms", start, end, chunks.size(), corrected, (System.nanoTime() - began) / 1e6));
+            return corrected;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Rebuild was interrupted.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Rebuild failed.", cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
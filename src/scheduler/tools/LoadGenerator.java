@@ -0,0 +1,400 @@
+package scheduler.tools;
+
+import scheduler.model.Appointment;
+import scheduler.model.Availability;
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+import scheduler.model.Reservation;
+import scheduler.model.Vaccine;
+import scheduler.repository.Repositories;
+import scheduler.service.AvailabilityIndex;
+import scheduler.service.ReservationService;
+import scheduler.util.LatencyHistogram;
+import scheduler.util.Util;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Load generator for the reservation path. Creates a synthetic data set (patients, caregivers,
+// one vaccine and availability over a range of days), then runs a weighted mix of reserve, cancel
+// and search from many threads at once, through the same ReservationService and AvailabilityIndex
+// calls the commands use. Afterwards it reports throughput and p50/p95/p99 latency per operation
+// and checks that the data is still consistent:
+//
+//   - every AppointmentID is unique
+//   - no caregiver has more appointments on a day than the doses it uploaded, and its DosesLeft
+//     matches what is left after its appointments
+//   - the vaccine's dose count equals the initial doses minus the appointments that still exist
+//   - the appointments left match the reservations minus the cancellations the workers saw succeed
+//
+// The exit status is 1 if any check fails. The in-memory store is used unless --storage jdbc is
+// given; on a database, names carry a per-run prefix and days are picked from a random far-future
+// range so runs don't see each other's data.
+//
+// Usage: LoadGenerator [--threads n] [--seconds n | --operations n] [--mix reserve,cancel,search]
+//                      [--patients n] [--caregivers n] [--days n] [--doses-per-slot n]
+//                      [--vaccine-doses n] [--storage memory|jdbc]
+public class LoadGenerator {
+
+    private enum Operation {
+        RESERVE, CANCEL, SEARCH
+    }
+
+    private final int threads;
+    private final long seconds;
+    private final long operations;
+    private final int[] mix;
+    private final int patients;
+    private final int caregivers;
+    private final int days;
+    private final int dosesPerSlot;
+    private final int vaccineDoses;
+
+    private final String prefix = "lg" + Long.toString(System.currentTimeMillis(), 36) + "_";
+    private final String vaccineName = prefix + "vaccine";
+    private final List<String> patientNames = new ArrayList<>();
+    private final List<String> caregiverNames = new ArrayList<>();
+    private final List<Date> dates = new ArrayList<>();
+
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+    private final AtomicLongArray outcomes = new AtomicLongArray(Reservation.Status.values().length);
+    private final AtomicLong cancelled = new AtomicLong();
+    private final ConcurrentLinkedQueue<String> errorMessages = new ConcurrentLinkedQueue<>();
+
+    public LoadGenerator(int threads, long seconds, long operations, int[] mix, int patients, int caregivers,
+                         int days, int dosesPerSlot, int vaccineDoses) {
+        this.threads = threads;
+        this.seconds = seconds;
+        this.operations = operations;
+        this.mix = mix;
+        this.patients = patients;
+        this.caregivers = caregivers;
+        this.days = days;
+        this.dosesPerSlot = dosesPerSlot;
+        this.vaccineDoses = vaccineDoses;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+            errors.put(operation, new AtomicLong());
+        }
+    }
+
+    public static void main(String[] args) {
+        int threads = 16;
+        long seconds = 10;
+        long operations = 0;
+        int[] mix = {60, 20, 20};
+        int patients = 200;
+        int caregivers = 20;
+        int days = 7;
+        int dosesPerSlot = 5;
+        int vaccineDoses = 500;
+        String storage = "memory";
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 >= args.length) {
+                    System.out.println("Missing value for " + args[i]);
+                    return;
+                }
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--seconds":
+                        seconds = Long.parseLong(value);
+                        operations = 0;
+                        break;
+                    case "--operations":
+                        operations = Long.parseLong(value);
+                        break;
+                    case "--mix":
+                        String[] parts = value.split(",");
+                        if (parts.length != 3) {
+                            throw new NumberFormatException();
+                        }
+                        mix = new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                                Integer.parseInt(parts[2])};
+                        break;
+                    case "--patients":
+                        patients = Integer.parseInt(value);
+                        break;
+                    case "--caregivers":
+                        caregivers = Integer.parseInt(value);
+                        break;
+                    case "--days":
+                        days = Integer.parseInt(value);
+                        break;
+                    case "--doses-per-slot":
+                        dosesPerSlot = Integer.parseInt(value);
+                        break;
+                    case "--vaccine-doses":
+                        vaccineDoses = Integer.parseInt(value);
+                        break;
+                    case "--storage":
+                        storage = value;
+                        break;
+                    default:
+                        System.out.println("Unknown option: " + args[i]);
+                        return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Please enter valid numbers!");
+            return;
+        }
+        if (threads <= 0 || patients <= 0 || caregivers <= 0 || days <= 0 || dosesPerSlot <= 0 || vaccineDoses < 0
+                || mix[0] < 0 || mix[1] < 0 || mix[2] < 0 || mix[0] + mix[1] + mix[2] == 0) {
+            System.out.println("Sizes and threads must be positive and the mix must not be empty!");
+            return;
+        }
+
+        boolean consistent;
+        try {
+            Repositories.use(Repositories.create(storage));
+            LoadGenerator generator = new LoadGenerator(threads, seconds, operations, mix, patients, caregivers,
+                    days, dosesPerSlot, vaccineDoses);
+            generator.seed();
+            generator.run();
+            consistent = generator.check();
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        } catch (SQLException | InterruptedException e) {
+            System.out.println("Load generation failed: " + e.getMessage());
+            e.printStackTrace();
+            consistent = false;
+        }
+        System.exit(consistent ? 0 : 1);
+    }
+
+    public void seed() throws SQLException {
+        long start = System.nanoTime();
+        // every synthetic account shares one password; only the data shape matters here
+        byte[] salt = Util.generateSalt();
+        byte[] hash = Util.generateHash("load", salt);
+
+        List<Patient> newPatients = new ArrayList<>();
+        for (int i = 0; i < patients; i++) {
+            patientNames.add(prefix + "p" + i);
+            newPatients.add(new Patient.PatientBuilder(patientNames.get(i), salt, hash).build());
+        }
+        Patient.saveAllToDB(newPatients, Availability.DEFAULT_BATCH_SIZE);
+
+        List<Caregiver> newCaregivers = new ArrayList<>();
+        for (int i = 0; i < caregivers; i++) {
+            caregiverNames.add(prefix + "c" + i);
+            newCaregivers.add(new Caregiver.CaregiverBuilder(caregiverNames.get(i), salt, hash).build());
+        }
+        Caregiver.saveAllToDB(newCaregivers, Availability.DEFAULT_BATCH_SIZE);
+
+        LocalDate first = LocalDate.of(2100, 1, 1).plusDays(ThreadLocalRandom.current().nextInt(200000));
+        List<Availability> availabilities = new ArrayList<>();
+        for (int d = 0; d < days; d++) {
+            dates.add(Date.valueOf(first.plusDays(d)));
+            for (String caregiver : caregiverNames) {
+                availabilities.add(new Availability(dates.get(d), caregiver, dosesPerSlot));
+            }
+        }
+        Availability.saveAllToDB(availabilities, Availability.DEFAULT_BATCH_SIZE);
+        new Vaccine.VaccineBuilder(vaccineName, vaccineDoses).build().saveToDB();
+
+        System.out.println(String.format(Locale.ROOT,
+                "Seeded %d patients, %d caregivers, %d days x %d doses per slot, %d doses of %s in %.2f s",
+                patients, caregivers, days, dosesPerSlot, vaccineDoses, vaccineName,
+                (System.nanoTime() - start) / 1e9));
+    }
+
+    public void run() throws InterruptedException {
+        System.out.println("Running " + threads + " threads, mix reserve/cancel/search " + mix[0] + "/" + mix[1] +
+                "/" + mix[2] + (operations > 0 ? ", " + operations + " operations" : ", " + seconds + " s"));
+        AtomicLong remaining = new AtomicLong(operations > 0 ? operations : Long.MAX_VALUE);
+        long deadline = operations > 0 ? Long.MAX_VALUE : System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> work(remaining, deadline)));
+        }
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (ExecutionException e) {
+                errorMessages.add("worker died: " + e.getCause());
+            }
+        }
+        executor.shutdown();
+        report(System.nanoTime() - start);
+    }
+
+    private void work(AtomicLong remaining, long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // each worker only cancels appointments it booked itself, so no two cancels race on one ID
+        List<Reservation> booked = new ArrayList<>();
+        int total = mix[0] + mix[1] + mix[2];
+        while (System.nanoTime() < deadline && remaining.getAndDecrement() > 0) {
+            int pick = random.nextInt(total);
+            Operation operation = pick < mix[0] ? Operation.RESERVE
+                    : pick < mix[0] + mix[1] ? Operation.CANCEL : Operation.SEARCH;
+            if (operation == Operation.CANCEL && booked.isEmpty()) {
+                operation = Operation.RESERVE;
+            }
+            Date date = dates.get(random.nextInt(dates.size()));
+            long start = System.nanoTime();
+            try {
+                switch (operation) {
+                    case RESERVE:
+                        String patient = patientNames.get(random.nextInt(patientNames.size()));
+                        Reservation reservation = ReservationService.reserve(date, vaccineName, patient);
+                        outcomes.incrementAndGet(reservation.getStatus().ordinal());
+                        if (reservation.isReserved()) {
+                            booked.add(reservation);
+                        }
+                        break;
+                    case CANCEL:
+                        Reservation victim = booked.remove(random.nextInt(booked.size()));
+                        Appointment appointment = Appointment.getAppointmentById(victim.getAppointmentID());
+                        if (appointment == null) {
+                            errorMessages.add("appointment " + victim.getAppointmentID() + " disappeared before cancel");
+                            errors.get(operation).incrementAndGet();
+                            continue;
+                        }
+                        ReservationService.cancel(appointment);
+                        cancelled.incrementAndGet();
+                        break;
+                    default:
+                        SortedMap<String, Integer> slots = AvailabilityIndex.getInstance().lookup(date);
+                        if (slots == null) {
+                            throw new IllegalStateException("search returned nothing");
+                        }
+                        break;
+                }
+                latencies.get(operation).record(System.nanoTime() - start);
+            } catch (SQLException | RuntimeException e) {
+                errors.get(operation).incrementAndGet();
+                if (errorMessages.size() < 20) {
+                    errorMessages.add(operation + ": " + e);
+                }
+            }
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long total = 0;
+        System.out.println(String.format("%-8s %10s %8s %12s %10s %10s %10s %10s",
+                "op", "count", "errors", "ops/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies.get(operation);
+            total += histogram.getCount();
+            System.out.println(String.format(Locale.ROOT, "%-8s %10d %8d %12.1f %10.3f %10.3f %10.3f %10.3f",
+                    operation.name().toLowerCase(Locale.ROOT), histogram.getCount(), errors.get(operation).get(),
+                    histogram.getCount() / seconds,
+                    histogram.getPercentile(0.50, TimeUnit.MILLISECONDS),
+                    histogram.getPercentile(0.95, TimeUnit.MILLISECONDS),
+                    histogram.getPercentile(0.99, TimeUnit.MILLISECONDS),
+                    histogram.getMaxNanos() / 1e6));
+        }
+        System.out.println(String.format(Locale.ROOT, "%d operations in %.2f s (%.1f ops/s)",
+                total, seconds, total / seconds));
+        StringBuilder statuses = new StringBuilder("reserve outcomes:");
+        for (Reservation.Status status : Reservation.Status.values()) {
+            statuses.append(' ').append(status).append('=').append(outcomes.get(status.ordinal()));
+        }
+        System.out.println(statuses);
+        for (String message : errorMessages) {
+            System.out.println("error: " + message);
+        }
+    }
+
+    // Returns false if any invariant is violated; run once all workers have stopped.
+    public boolean check() throws SQLException {
+        List<String> violations = new ArrayList<>();
+
+        Map<Integer, Appointment> appointments = new HashMap<>();
+        for (String patient : patientNames) {
+            for (Appointment appointment : Appointment.getAppointmentsForPatient(patient)) {
+                if (appointments.put(appointment.getAppointmentID(), appointment) != null) {
+                    violations.add("duplicate AppointmentID " + appointment.getAppointmentID());
+                }
+            }
+        }
+        Set<Integer> byCaregiver = new HashSet<>();
+        Map<String, Integer> booked = new HashMap<>();
+        for (String caregiver : caregiverNames) {
+            for (Appointment appointment : Appointment.getAppointmentsForCaregiver(caregiver)) {
+                if (!byCaregiver.add(appointment.getAppointmentID())) {
+                    violations.add("duplicate AppointmentID " + appointment.getAppointmentID());
+                }
+                booked.merge(slotKey(appointment.getDate(), caregiver), 1, Integer::sum);
+            }
+        }
+        if (!byCaregiver.equals(appointments.keySet())) {
+            violations.add("patients see " + appointments.size() + " appointments but caregivers see " +
+                    byCaregiver.size());
+        }
+
+        AvailabilityIndex.getInstance().clear();
+        for (Date date : dates) {
+            SortedMap<String, Integer> open = Repositories.availabilities().findOpenSlots(date);
+            for (String caregiver : caregiverNames) {
+                int taken = booked.getOrDefault(slotKey(date, caregiver), 0);
+                int left = open.getOrDefault(caregiver, 0);
+                if (taken > dosesPerSlot) {
+                    violations.add(caregiver + " has " + taken + " appointments on " + date + " for " +
+                            dosesPerSlot + " doses");
+                }
+                if (taken + left != dosesPerSlot) {
+                    violations.add(caregiver + " on " + date + ": " + taken + " booked + " + left +
+                            " left != " + dosesPerSlot);
+                }
+            }
+        }
+
+        Vaccine vaccine = new Vaccine.VaccineGetter(vaccineName).get();
+        int doses = vaccine == null ? -1 : vaccine.getAvailableDoses();
+        if (doses + appointments.size() != vaccineDoses) {
+            violations.add(vaccineName + " has " + doses + " doses left with " + appointments.size() +
+                    " appointments, expected " + (vaccineDoses - appointments.size()));
+        }
+
+        long expected = outcomes.get(Reservation.Status.RESERVED.ordinal()) - cancelled.get();
+        if (appointments.size() != expected) {
+            violations.add(appointments.size() + " appointments exist but " + expected +
+                    " reservations were not cancelled");
+        }
+
+        if (violations.isEmpty()) {
+            System.out.println("Invariants hold: " + appointments.size() + " appointments, " + doses +
+                    " doses left.");
+            return true;
+        }
+        for (String violation : violations) {
+            System.out.println("VIOLATION: " + violation);
+        }
+        return false;
+    }
+
+    private static String slotKey(Date date, String caregiver) {
+        return date + " " + caregiver.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,137 @@
+package scheduler.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Optional cache of recent successful logins, so a desk that re-authenticates the same user all day
+// skips both the Salt/Hash lookup and the PBKDF2 computation. Passwords are never stored: an entry
+// holds an HMAC of the password under a random key that only lives in this process, and it expires
+// after the TTL. Disabled unless CredentialCacheTtlSeconds is set.
+public class CredentialCache {
+
+    private static final CredentialCache instance = new CredentialCache(
+            Config.getLong("CredentialCacheTtlSeconds", 0) * 1000,
+            Config.getInt("CredentialCacheMaxEntries", 1000));
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final byte[] macKey = new byte[32];
+
+    // access-ordered, so the least recently used login is dropped first when the cache is full
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CredentialCache(long ttlMillis, int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        new SecureRandom().nextBytes(macKey);
+    }
+
+    public static CredentialCache getInstance() {
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return ttlMillis > 0 && maxEntries > 0;
+    }
+
+    // Returns {salt, hash} if this password was verified for the user within the TTL, null otherwise.
+    public byte[][] lookup(String role, String username, String password) {
+        if (!isEnabled()) {
+            return null;
+        }
+        String key = key(role, username);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null || !MessageDigest.isEqual(entry.digest, digest(key, password))) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new byte[][]{entry.salt, entry.hash};
+    }
+
+    public void put(String role, String username, String password, byte[] salt, byte[] hash) {
+        if (!isEnabled()) {
+            return;
+        }
+        String key = key(role, username);
+        Entry entry = new Entry(digest(key, password), salt, hash, System.currentTimeMillis() + ttlMillis);
+        synchronized (this) {
+            entries.put(key, entry);
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    // Called whenever an account is created or its credentials change.
+    public synchronized void invalidate(String role, String username) {
+        entries.remove(key(role, username));
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static String key(String role, String username) {
+        return role + ":" + username;
+    }
+
+    // the key is mixed in so a digest can't be replayed against another account
+    private byte[] digest(String key, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(macKey, "HmacSHA256"));
+            mac.update(key.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Entry {
+        private final byte[] digest;
+        private final byte[] salt;
+        private final byte[] hash;
+        private final long expiresAt;
+
+        Entry(byte[] digest, byte[] salt, byte[] hash, long expiresAt) {
+            this.digest = digest;
+            this.salt = salt;
+            this.hash = hash;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
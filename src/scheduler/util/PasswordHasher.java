@@ -0,0 +1,79 @@
+package scheduler.util;
+
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs the PBKDF2 work from Util on a small, bounded pool of platform threads, one per core by
+// default. Callers (including virtual threads) only block on a future, so a burst of logins
+// queues here instead of occupying request threads or pooled database connections, and the
+// per-thread SecretKeyFactory/SecureRandom in Util stay warm. When the queue is full the caller
+// hashes on its own thread, which throttles the burst.
+public class PasswordHasher {
+
+    private static final int THREADS = Config.getInt("HashThreads", Runtime.getRuntime().availableProcessors());
+    private static final int QUEUE_SIZE = Config.getInt("HashQueueSize", 1024);
+
+    private static final ThreadPoolExecutor executor = createExecutor();
+
+    private static ThreadPoolExecutor createExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), r -> {
+                    Thread t = new Thread(r, "password-hasher-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    public static Future<byte[]> hashAsync(String password, byte[] salt) {
+        return CompletableFuture.supplyAsync(() -> Util.generateHash(password, salt), executor);
+    }
+
+    // Generates a fresh salt and its hash; the result is {salt, hash}.
+    public static Future<byte[][]> saltAndHashAsync(String password) {
+        return CompletableFuture.supplyAsync(() -> {
+            byte[] salt = Util.generateSalt();
+            return new byte[][]{salt, Util.generateHash(password, salt)};
+        }, executor);
+    }
+
+    public static byte[] hash(String password, byte[] salt) {
+        return await(hashAsync(password, salt));
+    }
+
+    public static boolean verify(String password, byte[] salt, byte[] expectedHash) {
+        // constant-time comparison, so response timing does not leak how much of the hash matched
+        return MessageDigest.isEqual(expectedHash, hash(password, salt));
+    }
+
+    public static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing a password.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public static int getQueuedTasks() {
+        return executor.getQueue().size();
+    }
+
+    public static long getCompletedTasks() {
+        return executor.getCompletedTaskCount();
+    }
+}